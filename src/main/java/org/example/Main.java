@@ -1,8 +1,11 @@
 package org.example;
 
+import org.example.builtin.ReaderInputProvider;
 import org.example.error.*;
-import org.example.interpreter.Interpreter;
+import org.example.interpreter.InterpreterConfig;
+import org.example.interpreter.PreparedProgram;
 import org.example.interpreter.PrinterVisitor;
+import org.example.interpreter.Profiler;
 import org.example.lexer.CodeLexer;
 import org.example.lexer.CommentLexer;
 import org.example.parser.Parser;
@@ -15,18 +18,31 @@ import java.io.*;
 import java.util.Scanner;
 
 public class Main {
+    /**
+     * Usage: {@code Main <file> [--profile [collapsed stacks file]]}.
+     * With {@code --profile} a per-function and per-statement report is printed after the run
+     * and the collapsed stacks are written to the given file ({@code <file>.collapsed} by default).
+     */
     public static void main(String @NotNull [] args) {
         String fileName = args[0];
+        String profileFileName = null;
+        if (args.length > 1 && args[1].equals("--profile")) {
+            profileFileName = args.length > 2 ? args[2] : fileName + ".collapsed";
+        }
         try {
-            runPipeline(fileName);
+            runPipeline(fileName, profileFileName);
         } catch (IOException e) {
             System.out.println("Could not find input file.");
         }
     }
 
-    private static void runPipeline(String fileName) throws IOException {
+    private static void runPipeline(String fileName, String profileFileName) throws IOException {
         Program program;
         ErrorManager eM = new ErrorManager();
+        InterpreterConfig config = new InterpreterConfig();
+        if (profileFileName != null) {
+            config.setProfiler(new Profiler());
+        }
         try {
             try (Reader fileReader = new FileReader(fileName)) {
                 CodeSource source = new CodeSource(fileReader, eM);
@@ -38,7 +54,8 @@ public class Main {
                 System.out.println(e.getMessage());
                 return;
             }
-            Interpreter interpreter = new Interpreter(eM, program);
+            PreparedProgram preparedProgram = PreparedProgram.prepare(program, eM, config);
+            preparedProgram.execute(eM, ReaderInputProvider.STANDARD_INPUT, System.out);
             //            PrinterVisitor printer = new PrinterVisitor(fileName);
             //            program.accept(printer);
             System.out.println("\nErrors: ");
@@ -49,5 +66,15 @@ public class Main {
             eM.printErrors(Severity.INFO);
             System.out.println(e.getMessage());
         }
+        if (config.getProfiler() != null) {
+            writeProfile(config.getProfiler(), profileFileName);
+        }
+    }
+
+    private static void writeProfile(Profiler profiler, String profileFileName) throws IOException {
+        profiler.printReport(System.out);
+        try (Writer writer = new FileWriter(profileFileName)) {
+            profiler.writeCollapsedStacks(writer);
+        }
     }
 }
\ No newline at end of file
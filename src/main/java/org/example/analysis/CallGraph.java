@@ -0,0 +1,84 @@
+package org.example.analysis;
+
+import org.example.program.*;
+
+import java.util.*;
+
+/**
+ * Names of the functions called directly by each user function of a program.
+ * Methods of Date and Period are not functions, so calls through member expressions are left out.
+ */
+public class CallGraph extends TreeWalker {
+    private final Map<String, Set<String>> callees = new HashMap<>();
+    private Set<String> currentCallees;
+
+    public static CallGraph of(Program program) {
+        CallGraph graph = new CallGraph();
+        program.accept(graph);
+        return graph;
+    }
+
+    public Set<String> getFunctions() {
+        return Collections.unmodifiableSet(callees.keySet());
+    }
+
+    public Set<String> getCallees(String function) {
+        return Collections.unmodifiableSet(callees.getOrDefault(function, Set.of()));
+    }
+
+    /**
+     * @return true if the function can call itself, directly or through other functions
+     */
+    public boolean isRecursive(String function) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(getCallees(function));
+        while (!pending.isEmpty()) {
+            String callee = pending.pop();
+            if (callee.equals(function)) {
+                return true;
+            }
+            if (visited.add(callee)) {
+                pending.addAll(getCallees(callee));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the function and all functions it can call, directly or through other functions
+     */
+    public Set<String> getReachable(String function) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(List.of(function));
+        while (!pending.isEmpty()) {
+            String callee = pending.pop();
+            if (visited.add(callee)) {
+                pending.addAll(getCallees(callee));
+            }
+        }
+        return visited;
+    }
+
+    @Override
+    public void visit(UserFunctionDef functionDef) {
+        currentCallees = new HashSet<>();
+        callees.put(functionDef.getName(), currentCallees);
+        functionDef.getBody().accept(this);
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        expression.getObject().accept(this);
+        if (expression.getMember() instanceof FunctionCallExpression) {
+            for (var argument : ((FunctionCallExpression) expression.getMember()).getArguments()) {
+                argument.accept(this);
+            }
+        }
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        currentCallees.add(expression.getName());
+        super.visit(expression);
+    }
+}
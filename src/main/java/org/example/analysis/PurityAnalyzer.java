@@ -0,0 +1,36 @@
+package org.example.analysis;
+
+import org.example.program.*;
+
+import java.util.*;
+
+/**
+ * Finds user functions whose result depends only on their arguments.
+ * A function is impure if it calls a builtin (print, read and vector functions), a function that is not defined in the program,
+ * or another impure function. Members of Date and Period never have side effects.
+ * Calls between user functions (including recursion) are resolved with a fixed point.
+ */
+public class PurityAnalyzer {
+    private PurityAnalyzer() {
+    }
+
+    public static Set<String> findPureFunctions(Program program) {
+        CallGraph callGraph = CallGraph.of(program);
+        Set<String> pure = new HashSet<>(callGraph.getFunctions());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (String function : callGraph.getFunctions()) {
+                if (!pure.contains(function)) continue;
+                for (String callee : callGraph.getCallees(function)) {
+                    if (!(program.getFunctions().get(callee) instanceof UserFunctionDef) || !pure.contains(callee)) {
+                        pure.remove(function);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return pure;
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.analysis;
+
+import org.example.error.ErrorManager;
+import org.example.error.InterpreterErrorInfo;
+import org.example.error.Severity;
+import org.example.program.*;
+import org.example.source.Position;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Whole-program checks done once before execution, so that the interpreter does not have to repeat them on every call.
+ * Reports calls of undefined functions, calls with a wrong number of arguments, unknown Date and Period members,
+ * conditions that can never be boolean and a missing or parameterized main function.
+ */
+public class SemanticChecker extends TreeWalker {
+    private static final Set<String> READ_FUNCTIONS = Set.of("readString", "readInt", "readDouble", "readDate", "readPeriod");
+
+    private final ErrorManager errorManager;
+    private final Map<String, FunctionDef> functions;
+
+    private SemanticChecker(ErrorManager errorManager, Map<String, FunctionDef> functions) {
+        this.errorManager = errorManager;
+        this.functions = functions;
+    }
+
+    /**
+     * @param functions user and builtin functions the program's calls are resolved against
+     */
+    public static void check(Program program, Map<String, FunctionDef> functions, ErrorManager errorManager) {
+        FunctionDef main = functions.get("main");
+        if (!(main instanceof UserFunctionDef)) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            main == null ? new Position(0, 0) : main.getPosition(),
+                            "Reference to an undefined function: main"));
+        } else if (!((UserFunctionDef) main).getParameters().isEmpty()) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            main.getPosition(),
+                            String.format("Mismatched arguments. Function takes %d parameters, but 0 were provided ",
+                                    ((UserFunctionDef) main).getParameters().size())));
+        }
+        program.accept(new SemanticChecker(errorManager, functions));
+    }
+
+    @Override
+    public void visit(IfStatement statement) {
+        verifyCondition(statement.getCondition(), "Boolean expression expected inside \"if\" condition ");
+        super.visit(statement);
+    }
+
+    @Override
+    public void visit(WhileStatement statement) {
+        verifyCondition(statement.getCondition(), "Boolean expression expected inside \"while\" condition ");
+        super.visit(statement);
+    }
+
+    /**
+     * Only conditions that cannot be boolean whatever the values of variables are reported,
+     * the others are still checked when they are evaluated.
+     */
+    private void verifyCondition(Expression condition, String message) {
+        if (condition instanceof IntLiteralExpression
+                || condition instanceof DoubleLiteralExpression
+                || condition instanceof StringLiteralExpression
+                || condition instanceof DateLiteralExpression
+                || condition instanceof PeriodLiteralExpression
+                || condition instanceof AdditiveExpression
+                || condition instanceof MultiplicativeExpression
+                || condition instanceof NegationExpression
+                        && ((NegationExpression) condition).getOperator() == NegationOperator.MINUS) {
+            errorManager.reportError(new InterpreterErrorInfo(Severity.ERROR, condition.getPosition(), message));
+        }
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        expression.getObject().accept(this);
+        Expression member = expression.getMember();
+        if (member instanceof IdentifierExpression) {
+            String name = ((IdentifierExpression) member).getName();
+            if (Member.of(name, false) == null) {
+                errorManager.reportError(
+                        new InterpreterErrorInfo(
+                                Severity.ERROR,
+                                member.getPosition(),
+                                String.format("Neither Date nor Period has a field named \"%s\"", name)));
+            }
+        } else if (member instanceof FunctionCallExpression) {
+            var method = (FunctionCallExpression) member;
+            if (Member.of(method.getName(), true) == null) {
+                errorManager.reportError(
+                        new InterpreterErrorInfo(
+                                Severity.ERROR,
+                                method.getPosition(),
+                                String.format("Neither Date nor Period has a method named \"%s\"", method.getName())));
+            }
+            for (var argument : method.getArguments()) {
+                argument.accept(this);
+            }
+        }
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        FunctionDef function = functions.get(expression.getName());
+        if (function == null) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            expression.getPosition(),
+                            String.format("Reference to an undefined function: %s", expression.getName())));
+        } else if (function instanceof UserFunctionDef
+                && ((UserFunctionDef) function).getParameters().size() != expression.getArguments().size()) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            expression.getPosition(),
+                            String.format("Mismatched arguments. Function takes %d parameters, but %d were provided ",
+                                    ((UserFunctionDef) function).getParameters().size(), expression.getArguments().size())));
+        } else if (READ_FUNCTIONS.contains(expression.getName()) && !expression.getArguments().isEmpty()) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.WARN,
+                            expression.getPosition(),
+                            "Read function does not take any arguments, but they were provided."));
+        }
+        super.visit(expression);
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.analysis;
+
+import org.example.program.*;
+
+/**
+ * Visitor that walks every node of a program tree without doing anything else.
+ * Analyses extend it and override only the nodes they are interested in.
+ */
+public abstract class TreeWalker implements ProgramVisitor {
+
+    @Override
+    public void visit(Program program) {
+        for (var function : program.getFunctions().values()) {
+            function.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(UserFunctionDef functionDef) {
+        functionDef.getBody().accept(this);
+    }
+
+    @Override
+    public void visit(Block block) {
+        for (var statement : block.getStatements()) {
+            statement.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(ExpressionStatement statement) {
+        statement.getExpression().accept(this);
+    }
+
+    @Override
+    public void visit(IfStatement statement) {
+        statement.getCondition().accept(this);
+        statement.getIfBlock().accept(this);
+        if (statement.getElseBlock() != null) {
+            statement.getElseBlock().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(WhileStatement statement) {
+        statement.getCondition().accept(this);
+        statement.getLoopBlock().accept(this);
+    }
+
+    @Override
+    public void visit(ReturnStatement statement) {
+        if (statement.getExpression() != null) {
+            statement.getExpression().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(OrExpression expression) {
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(AndExpression expression) {
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(ComparativeExpression expression) {
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(AdditiveExpression expression) {
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(MultiplicativeExpression expression) {
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+    }
+
+    @Override
+    public void visit(NegationExpression expression) {
+        expression.getExpression().accept(this);
+    }
+
+    @Override
+    public void visit(AssignmentExpression expression) {
+        expression.getLeft().accept(this);
+        expression.getRight().accept(this);
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        expression.getObject().accept(this);
+        expression.getMember().accept(this);
+    }
+
+    @Override
+    public void visit(IntLiteralExpression expression) {
+    }
+
+    @Override
+    public void visit(DoubleLiteralExpression expression) {
+    }
+
+    @Override
+    public void visit(StringLiteralExpression expression) {
+    }
+
+    @Override
+    public void visit(DateLiteralExpression expression) {
+    }
+
+    @Override
+    public void visit(PeriodLiteralExpression expression) {
+    }
+
+    @Override
+    public void visit(IdentifierExpression expression) {
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        for (var argument : expression.getArguments()) {
+            argument.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(CachedExpression expression) {
+        expression.getExpression().accept(this);
+    }
+
+    @Override
+    public void visit(TemporaryScopeStatement statement) {
+        statement.getStatement().accept(this);
+    }
+
+    @Override
+    public void visit(InlinedCallExpression expression) {
+        for (var argument : expression.getArguments()) {
+            argument.accept(this);
+        }
+        for (var statement : expression.getStatements()) {
+            statement.accept(this);
+        }
+        if (expression.getResult() != null) {
+            expression.getResult().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        expression.getLeftExpression().accept(this);
+        expression.getRightExpression().accept(this);
+    }
+
+    // fused expressions are walked as the expressions they replace, so that analyses see their assignments
+    @Override
+    public void visit(LocalComparisonExpression expression) {
+        expression.getOriginal().accept(this);
+    }
+
+    @Override
+    public void visit(IncrementLocalExpression expression) {
+        expression.getOriginal().accept(this);
+    }
+
+    @Override
+    public void visit(AccumulateLocalExpression expression) {
+        expression.getOriginal().accept(this);
+    }
+
+    @Override
+    public void visit(TemporalChainExpression expression) {
+        expression.getOriginal().accept(this);
+    }
+
+    @Override
+    public void visit(BoundCallExpression expression) {
+        expression.getOriginal().accept(this);
+    }
+
+    @Override
+    public void visit(MemberAccessExpression expression) {
+        expression.getObject().accept(this);
+        for (var argument : expression.getArguments()) {
+            argument.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(ReadStringFunctionDef readStringFunctionDef) {
+    }
+
+    @Override
+    public void visit(PrintFunctionDef printFunctionDef) {
+    }
+
+    @Override
+    public void visit(ReadIntFunctionDef readIntFunctionDef) {
+    }
+
+    @Override
+    public void visit(ReadDoubleFunctionDef readDoubleFunctionDef) {
+    }
+
+    @Override
+    public void visit(ReadDateFunctionDef readDateFunctionDef) {
+    }
+
+    @Override
+    public void visit(ReadPeriodFunctionDef readPeriodFunctionDef) {
+    }
+
+    @Override
+    public void visit(DateVectorFunctionDef dateVectorFunctionDef) {
+    }
+
+    @Override
+    public void visit(SizeFunctionDef sizeFunctionDef) {
+    }
+
+    @Override
+    public void visit(AtFunctionDef atFunctionDef) {
+    }
+
+    @Override
+    public void visit(CountLessFunctionDef countLessFunctionDef) {
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.analysis;
+
+import org.example.types.Date;
+import org.example.types.Period;
+
+/**
+ * Statically known type of a value. UNKNOWN covers every value, including null.
+ */
+public enum ValueType {
+    INT,
+    DOUBLE,
+    STRING,
+    BOOLEAN,
+    DATE,
+    PERIOD,
+    UNKNOWN;
+
+    public ValueType join(ValueType other) {
+        return this == other ? this : UNKNOWN;
+    }
+
+    public boolean isNumber() {
+        return this == INT || this == DOUBLE;
+    }
+
+    public static ValueType of(Object value) {
+        if (value instanceof Integer) return INT;
+        if (value instanceof Double) return DOUBLE;
+        if (value instanceof String) return STRING;
+        if (value instanceof Boolean) return BOOLEAN;
+        if (value instanceof Date) return DATE;
+        if (value instanceof Period) return PERIOD;
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.builtin;
+
+import java.io.IOException;
+
+/**
+ * Source of lines read by the builtin read functions.
+ */
+public interface InputProvider {
+    /**
+     * @return next line of input without the line terminator, or null if there is no more input
+     */
+    String nextLine() throws IOException;
+}
@@ -0,0 +1,22 @@
+package org.example.builtin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+public class ReaderInputProvider implements InputProvider {
+    // a single buffered reader for the whole process, separate readers would steal buffered lines from each other
+    public static final InputProvider STANDARD_INPUT = new ReaderInputProvider(new InputStreamReader(System.in));
+
+    private final BufferedReader reader;
+
+    public ReaderInputProvider(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public String nextLine() throws IOException {
+        return reader.readLine();
+    }
+}
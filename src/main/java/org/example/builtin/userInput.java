@@ -1,4 +0,0 @@
-package org.example.builtin;
-
-public interface userInput {
-}
@@ -2,14 +2,15 @@ package org.example.interpreter;
 
 import lombok.Getter;
 
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.Map;
 
 public class BlockContext implements Scope{
     @Getter
-    final Hashtable<String, ValueReference> localVariables;
+    final Map<String, ValueReference> localVariables;
 
     BlockContext(){
-       localVariables = new Hashtable<>();
+       localVariables = new HashMap<>();
     }
 
     void addVariable(String name, ValueReference variable) {
@@ -0,0 +1,65 @@
+package org.example.interpreter;
+
+import org.example.analysis.ValueType;
+import org.example.builtin.InputProvider;
+import org.example.program.FunctionDef;
+import org.example.program.WhileStatement;
+import org.example.types.DateRegister;
+import org.example.types.PeriodRegister;
+import org.example.types.TemporalParser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mutable state of a single program run. The program tree itself is never modified while running,
+ * so any number of runs, each with its own context, can execute the same Program concurrently.
+ */
+public class ExecutionContext {
+    final Deque<FunctionCallContext> callStack = new ArrayDeque<>();
+    ValueReference lastResult;
+
+    // functions of the program being run, by name
+    final Map<String, FunctionDef> functions;
+    final Set<String> pureFunctions;
+
+    final InputProvider input;
+    final Appendable output;
+
+    final Map<String, MemoCache> memoCaches = new HashMap<>();
+    // loops specialized while running, by the types of the variables they were specialized for
+    final Map<WhileStatement, Map<Map<String, ValueType>, WhileStatement>> specializedLoops = new IdentityHashMap<>();
+    final Profiler profiler;
+    // reused by every readDate() and readPeriod() call
+    final TemporalParser temporalParser;
+    final PeriodRegister parsedPeriod = new PeriodRegister();
+    // every print() call formats its arguments into it and writes it to the output at once
+    final StringBuilder printBuffer = new StringBuilder();
+    // registers of the temporal chains being evaluated, indexed by how deep the chain is nested
+    final List<DateRegister> dateRegisters = new ArrayList<>();
+    final List<PeriodRegister> periodRegisters = new ArrayList<>();
+    int temporalDepth;
+
+    long remainingSteps;
+    int stepsUntilClockCheck;
+    long deadline;
+
+    ExecutionContext(InterpreterConfig config, int clockCheckInterval, Map<String, FunctionDef> functions,
+                     Set<String> pureFunctions, InputProvider input, Appendable output) {
+        this.functions = functions;
+        this.pureFunctions = pureFunctions;
+        this.input = input;
+        this.output = output;
+        this.profiler = config.getProfiler();
+        this.temporalParser = new TemporalParser(config.isIsoTemporalInput());
+        this.remainingSteps = config.getMaxSteps() < 0 ? Long.MAX_VALUE : config.getMaxSteps();
+        this.stepsUntilClockCheck = clockCheckInterval;
+        this.deadline = config.getTimeoutMillis() < 0 ? 0 : System.nanoTime() + config.getTimeoutMillis() * 1_000_000;
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.example.source.Position;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class FunctionCallContext implements Scope {
@@ -16,10 +17,28 @@ public class FunctionCallContext implements Scope {
     Position position;
     @Getter @Setter
     Boolean returned;
+    // values of CachedExpressions, null when not computed yet
+    Object[] temporaries = new Object[0];
 
     public FunctionCallContext(List<Object> arguments, Position position) {
         this.arguments = arguments;
         this.position = position;
         this.returned = false;
     }
+
+    Object getTemporary(int slot) {
+        return slot < temporaries.length ? temporaries[slot] : null;
+    }
+
+    void setTemporary(int slot, Object value) {
+        if (slot >= temporaries.length) {
+            temporaries = Arrays.copyOf(temporaries, slot + 1);
+        }
+        temporaries[slot] = value;
+    }
+
+    void clearTemporaries(int firstSlot, int slotCount) {
+        Arrays.fill(temporaries, Math.min(firstSlot, temporaries.length),
+                Math.min(firstSlot + slotCount, temporaries.length), null);
+    }
 }
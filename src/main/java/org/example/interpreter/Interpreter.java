@@ -1,141 +1,235 @@
 package org.example.interpreter;
 
+import org.example.analysis.ValueType;
+import org.example.builtin.InputProvider;
+import org.example.builtin.ReaderInputProvider;
 import org.example.error.ErrorManager;
 import org.example.error.InterpreterErrorInfo;
 import org.example.error.Severity;
+import org.example.optimizer.LoopSpecializer;
 import org.example.program.*;
 import org.example.source.Position;
 import org.example.types.Date;
+import org.example.types.DateRegister;
+import org.example.types.DateVector;
 import org.example.types.Period;
+import org.example.types.PeriodRegister;
+import org.example.types.PeriodVector;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class Interpreter implements ProgramVisitor {
 
     private final ErrorManager errorManager;
 
-    private final Stack<FunctionCallContext> callStack = new Stack<>();
-    private ValueReference lastResult;
-    private final Hashtable<String, FunctionDef> functionDefs = new Hashtable<>();
+    private final InterpreterConfig config;
+    private ExecutionContext context;
 
-    private ValueReference memberContext;
+    // iterations after which a running loop is specialized, 0 if loops are never specialized while running
+    private final int osrThreshold;
+
+    // the wall clock is read only once per this many steps
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
 
     private ValueReference moveLastResult(Position position) {
         ValueReference value = getLastResult(position);
-        lastResult = null;
+        context.lastResult = null;
         return value;
     }
 
     public ValueReference getLastResult(Position position) {
-        if (lastResult.getValue() == null) {
+        if (context.lastResult.getValue() == null) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
                             position,
                             "Attempted use of a null value."));
         }
-        return lastResult;
+        return context.lastResult;
     }
 
     public Interpreter(ErrorManager errorManager) {
+        this(errorManager, new InterpreterConfig());
+    }
+
+    public Interpreter(ErrorManager errorManager, InterpreterConfig config) {
         this.errorManager = errorManager;
+        this.config = config;
+        this.context = new ExecutionContext(config, CLOCK_CHECK_INTERVAL, PreparedProgram.BUILTIN_FUNCTIONS, Set.of(),
+                ReaderInputProvider.STANDARD_INPUT, System.out);
+        // the profile reports the statements of the program as written
+        this.osrThreshold = config.isSpecializeTypes() && config.getProfiler() == null
+                ? Math.max(config.getOsrThreshold(), 0) : 0;
     }
 
     public Interpreter(ErrorManager errorManager, Program program) {
-        this.errorManager = errorManager;
+        this(errorManager, program, new InterpreterConfig());
+    }
+
+    public Interpreter(ErrorManager errorManager, Program program, InterpreterConfig config) {
+        this(errorManager, config);
         program.accept(this);
     }
 
-    private void verifyInstance(Object object, List<Class<?>> types, Position position) {
-        if (types.stream().noneMatch(t -> t.isInstance(object))) {
+    public long getMemoHits() {
+        return context.memoCaches.values().stream().mapToLong(MemoCache::getHits).sum();
+    }
+
+    private static Object copyIfMutable(Object value) {
+        if (value instanceof Period) {
+            return new Period((Period) value);
+        }
+        if (value instanceof Date) {
+            return new Date((Date) value);
+        }
+        return value;
+    }
+
+    /**
+     * Charges one step of the execution budget. Called at every loop back-edge and every call,
+     * which is enough to stop any script, since only loops and recursion can run for long.
+     */
+    private void countStep(Position position) {
+        if (--context.remainingSteps < 0) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
                             position,
-                            String.format("Type error, expected any of type: %s; received: %s", types, object.getClass().getSimpleName())));
+                            String.format("Execution budget of %d steps exceeded", config.getMaxSteps())));
+        }
+        if (--context.stepsUntilClockCheck == 0) {
+            context.stepsUntilClockCheck = CLOCK_CHECK_INTERVAL;
+            if (context.deadline != 0 && System.nanoTime() - context.deadline > 0) {
+                errorManager.reportError(
+                        new InterpreterErrorInfo(
+                                Severity.ERROR,
+                                position,
+                                String.format("Execution time limit of %d ms exceeded", config.getTimeoutMillis())));
+            }
         }
     }
 
-    private void addFunctionDefinitionIfAbsent(FunctionDef functionDef) {
-        FunctionDef duplicatedUserFunctionDef;
-        if ((duplicatedUserFunctionDef = functionDefs.putIfAbsent(functionDef.getName(), functionDef)) != null) {
+    private void verifyCallDepth(Position position) {
+        if (config.getMaxCallDepth() >= 0 && context.callStack.size() >= config.getMaxCallDepth()) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
-                            duplicatedUserFunctionDef.getPosition(),
-                            String.format("Non-unique function identifier (%s)", functionDef.getName())));
+                            position,
+                            String.format("Maximum call depth of %d exceeded", config.getMaxCallDepth())));
         }
     }
 
+    private void verifyInstance(Object object, List<Class<?>> types, Position position) {
+        if (types.stream().noneMatch(t -> t.isInstance(object))) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            position,
+                            String.format("Type error, expected any of type: %s; received: %s", types, object.getClass().getSimpleName())));
+        }
+    }
+
+    /**
+     * Prepares the program and runs it once, reading the standard input and writing to the standard output.
+     */
     @Override
     public void visit(Program program) {
-        Position dummyPos = new Position(0, 0);
-        functionDefs.putAll(program.getFunctions());
-        addFunctionDefinitionIfAbsent(new ReadStringFunctionDef());
-        addFunctionDefinitionIfAbsent(new ReadIntFunctionDef());
-        addFunctionDefinitionIfAbsent(new ReadDoubleFunctionDef());
-        addFunctionDefinitionIfAbsent(new ReadDateFunctionDef());
-        addFunctionDefinitionIfAbsent(new ReadPeriodFunctionDef());
-        addFunctionDefinitionIfAbsent(new PrintFunctionDef());
+        execute(PreparedProgram.prepare(program, errorManager, config), ReaderInputProvider.STANDARD_INPUT, System.out);
+    }
 
+    /**
+     * Runs the main function of the prepared program with a fresh execution context.
+     * The program is only read, so other interpreters may run it at the same time.
+     * @return value returned by main
+     */
+    public Object execute(PreparedProgram prepared, InputProvider input, Appendable output) {
+        Position dummyPos = new Position(0, 0);
+        this.context = new ExecutionContext(config, CLOCK_CHECK_INTERVAL, prepared.getFunctions(), prepared.getPureFunctions(),
+                input, output);
 
         var mainCall = new FunctionCallExpression("main", List.of(), dummyPos);
-        mainCall.accept(this);
+        if (context.profiler != null) {
+            context.profiler.startRun();
+        }
+        try {
+            mainCall.accept(this);
+        } finally {
+            if (context.profiler != null) {
+                context.profiler.endRun();
+            }
+        }
+        return context.lastResult == null ? null : context.lastResult.getValue();
     }
 
     private void prepareBlockContext() {
-        BlockContext context = new BlockContext();
-        callStack.peek().getBlockContexts().add(0, context);
+        BlockContext blockContext = new BlockContext();
+        context.callStack.peek().getBlockContexts().add(0, blockContext);
     }
 
     @Override
     public void visit(UserFunctionDef functionDef) {
-        if (functionDef.getParameters().size() != callStack.peek().getArguments().size()) {
-            errorManager.reportError(
-                    new InterpreterErrorInfo(
-                            Severity.ERROR,
-                            functionDef.getPosition(),
-                            String.format("Mismatched arguments. Function takes %d parameters, but %d were provided ",
-                                    functionDef.getParameters().size(), callStack.peek().getArguments().size())));
+        if (context.profiler != null) {
+            context.profiler.enterFunction(functionDef);
         }
         prepareBlockContext();
         for (int i = 0; i < functionDef.getParameters().size(); i++) {
-            addVariableToBlockContext(callStack.peek().getArguments().get(i), functionDef.getParameters().get(i));
+            addVariableToBlockContext(context.callStack.peek().getArguments().get(i), functionDef.getParameters().get(i));
         }
 
         functionDef.getBody().accept(this);
         deleteBlockContext();
+        if (context.profiler != null) {
+            context.profiler.exitFunction();
+        }
     }
 
     private void deleteBlockContext() {
-        callStack.peek().getBlockContexts().remove(0);
+        context.callStack.peek().getBlockContexts().remove(0);
     }
 
     @Override
     public void visit(Block block) {
         prepareBlockContext();
         var statements = block.getStatements();
-        for (int i = 0; i < statements.size() && !callStack.peek().getReturned(); i++) {
+        for (int i = 0; i < statements.size() && !context.callStack.peek().getReturned(); i++) {
+            if (context.profiler != null) {
+                context.profiler.countStatement(statements.get(i));
+            }
             statements.get(i).accept(this);
-            if (statements.get(i) instanceof ReturnStatement) {
-                callStack.peek().setReturned(true);
+            if (isReturn(statements.get(i))) {
+                context.callStack.peek().setReturned(true);
                 break;
-            } else if (i == statements.size() - 1) {
-                lastResult = new ValueReference(null);
+            } else if (i == statements.size() - 1 && !context.callStack.peek().getReturned()) {
+                // a block that ends without returning has no value, unless its last statement returned
+                context.lastResult = new ValueReference(null);
             }
         }
         deleteBlockContext();
     }
 
+    private static boolean isReturn(Statement statement) {
+        while (statement instanceof TemporaryScopeStatement) {
+            statement = ((TemporaryScopeStatement) statement).getStatement();
+        }
+        return statement instanceof ReturnStatement;
+    }
+
     @Override
     public void visit(ExpressionStatement statement) {
+        if (statement.getExpression() instanceof AccumulateLocalExpression) {
+            // the value of the statement is not used, so periods can be accumulated in place
+            accumulate((AccumulateLocalExpression) statement.getExpression(), true);
+            return;
+        }
         statement.getExpression().accept(this);
     }
 
     @Override
     public void visit(IfStatement statement) {
         statement.getCondition().accept(this);
-        if (!(lastResult.getValue() instanceof Boolean)) {
+        if (!(context.lastResult.getValue() instanceof Boolean)) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
@@ -144,7 +238,7 @@ public class Interpreter implements ProgramVisitor {
                     )
             );
         }
-        if ((Boolean) lastResult.getValue()) {
+        if ((Boolean) context.lastResult.getValue()) {
             statement.getIfBlock().accept(this);
         } else if (statement.getElseBlock() != null) {
             statement.getElseBlock().accept(this);
@@ -153,13 +247,39 @@ public class Interpreter implements ProgramVisitor {
 
     @Override
     public void visit(WhileStatement statement) {
-        statement.getCondition().accept(this);
-        verifyInstance(lastResult.getValue(), List.of(Boolean.class), statement.getCondition().getPosition());
-        while ((Boolean) lastResult.getValue()) {
-            statement.getLoopBlock().accept(this);
-            statement.getCondition().accept(this);
-            verifyInstance(lastResult.getValue(), List.of(Boolean.class), statement.getCondition().getPosition());
+        WhileStatement loop = statement;
+        int iterations = 0;
+        while (testLoopCondition(loop.getCondition())) {
+            countStep(loop.getPosition());
+            loop.getLoopBlock().accept(this);
+            if (iterations < osrThreshold && ++iterations == osrThreshold) {
+                // the variables stay where they are, only the code running the next iterations changes
+                loop = specializedLoop(statement);
+            }
+        }
+    }
+
+    private WhileStatement specializedLoop(WhileStatement loop) {
+        Map<String, ValueType> variableTypes = new HashMap<>();
+        for (BlockContext blockContext : context.callStack.peek().getBlockContexts()) {
+            for (var variable : blockContext.getLocalVariables().entrySet()) {
+                // the innermost declaration is the visible one, as in findVariable
+                variableTypes.putIfAbsent(variable.getKey(), ValueType.of(variable.getValue().getValue()));
+            }
+        }
+        return context.specializedLoops
+                .computeIfAbsent(loop, l -> new HashMap<>())
+                .computeIfAbsent(variableTypes, types -> LoopSpecializer.specialize(loop, types,
+                        config.isScalarReplacement(), config.isFuseSuperinstructions()));
+    }
+
+    private boolean testLoopCondition(Expression condition) {
+        if (condition instanceof LocalComparisonExpression) {
+            return compareLocals((LocalComparisonExpression) condition);
         }
+        condition.accept(this);
+        verifyInstance(context.lastResult.getValue(), List.of(Boolean.class), condition.getPosition());
+        return (Boolean) context.lastResult.getValue();
     }
 
     @Override
@@ -167,34 +287,34 @@ public class Interpreter implements ProgramVisitor {
         if (statement.getExpression() != null) {
             statement.getExpression().accept(this);
         } else {
-            lastResult = new ValueReference(null);
+            context.lastResult = new ValueReference(null);
         }
     }
 
     @Override
     public void visit(OrExpression expression) {
         expression.getLeftExpression().accept(this);
-        verifyInstance(lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
-        if ((Boolean) lastResult.getValue()) {
-            lastResult = new ValueReference(true);
+        verifyInstance(context.lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
+        if ((Boolean) context.lastResult.getValue()) {
+            context.lastResult = new ValueReference(true);
             return;
         }
         expression.getRightExpression().accept(this);
-        verifyInstance(lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
-        lastResult = new ValueReference(lastResult.getValue());
+        verifyInstance(context.lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
+        context.lastResult = new ValueReference(context.lastResult.getValue());
     }
 
     @Override
     public void visit(AndExpression expression) {
         expression.getLeftExpression().accept(this);
-        verifyInstance(lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
-        if (!(Boolean) lastResult.getValue()) {
-            lastResult = new ValueReference(false);
+        verifyInstance(context.lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
+        if (!(Boolean) context.lastResult.getValue()) {
+            context.lastResult = new ValueReference(false);
             return;
         }
         expression.getRightExpression().accept(this);
-        verifyInstance(lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
-        lastResult = new ValueReference(lastResult.getValue());
+        verifyInstance(context.lastResult.getValue(), List.of(Boolean.class), expression.getPosition());
+        context.lastResult = new ValueReference(context.lastResult.getValue());
     }
 
     @Override
@@ -234,7 +354,7 @@ public class Interpreter implements ProgramVisitor {
                     )
             );
         }
-        lastResult = new ValueReference(result);
+        context.lastResult = new ValueReference(result);
     }
 
     @Override
@@ -243,12 +363,7 @@ public class Interpreter implements ProgramVisitor {
         var left = getLastResult(expression.getLeftExpression().getPosition()).getValue();
         expression.getRightExpression().accept(this);
         var right = getLastResult(expression.getRightExpression().getPosition()).getValue();
-        Object result;
-        if (expression.getOperator() == AdditiveOperator.PLUS) {
-            result = OperationHandler.add(left, right);
-        } else {
-            result = OperationHandler.subtract(left, right);
-        }
+        Object result = addOrSubtract(expression.getOperator(), left, right, expression.getPosition());
         if (result == null) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
@@ -257,7 +372,21 @@ public class Interpreter implements ProgramVisitor {
                             String.format("Incompatible additive operands: %s +- %s",
                                     left.getClass().getSimpleName(), right.getClass().getSimpleName())));
         }
-        lastResult = new ValueReference(result);
+        context.lastResult = new ValueReference(result);
+    }
+
+    /**
+     * Reports the operands that are compatible, but whose result does not exist,
+     * such as a month added to January 31st or vectors of different sizes.
+     * @return null if the operands are incompatible
+     */
+    private Object addOrSubtract(AdditiveOperator operator, Object left, Object right, Position position) {
+        try {
+            return operator == AdditiveOperator.PLUS ? OperationHandler.add(left, right) : OperationHandler.subtract(left, right);
+        } catch (IllegalArgumentException e) {
+            errorManager.reportError(new InterpreterErrorInfo(Severity.ERROR, position, e.getMessage()));
+            return null;
+        }
     }
 
     @Override
@@ -289,7 +418,211 @@ public class Interpreter implements ProgramVisitor {
                             String.format("Incompatible operands in multiplicative expression: %s */ %s",
                                     left.getClass(), right.getClass())));
         }
-        lastResult = new ValueReference(result);
+        context.lastResult = new ValueReference(result);
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        // operand types were proven before execution, so neither null nor type checks are needed
+        expression.getLeftExpression().accept(this);
+        Object left = context.lastResult.getValue();
+        expression.getRightExpression().accept(this);
+        Object right = context.lastResult.getValue();
+        context.lastResult = new ValueReference(applySpecialized(expression.getOperator(), left, right, expression.getPosition()));
+    }
+
+    /**
+     * Reports a division by zero and, like addOrSubtract, a result that does not exist.
+     */
+    private Object applySpecialized(SpecializedOperator operator, Object left, Object right, Position position) {
+        try {
+            return OperationHandler.apply(operator, left, right);
+        } catch (ArithmeticException e) {
+            boolean division = operator == SpecializedOperator.INT_DIVIDE || operator == SpecializedOperator.DOUBLE_DIVIDE;
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            position,
+                            division ? "Division by zero detected" : e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            errorManager.reportError(new InterpreterErrorInfo(Severity.ERROR, position, e.getMessage()));
+        }
+        return null;
+    }
+
+    @Override
+    public void visit(TemporalChainExpression expression) {
+        // a chain evaluated inside an operand of this one gets registers of its own
+        int depth = context.temporalDepth++;
+        try {
+            SpecializedBinaryExpression chain = expression.getOriginal();
+            if (TemporalChainExpression.isDateOperation(chain)) {
+                DateRegister register = registerAt(context.dateRegisters, depth, DateRegister::new);
+                evaluateDate(chain, register, depth);
+                context.lastResult = new ValueReference(register.toDate());
+            } else {
+                PeriodRegister register = registerAt(context.periodRegisters, depth, PeriodRegister::new).clear();
+                evaluatePeriod(chain, register, 1);
+                context.lastResult = new ValueReference(register.toPeriod());
+            }
+        } catch (IllegalArgumentException e) {
+            // a date of the chain does not exist, reported like in addOrSubtract
+            errorManager.reportError(new InterpreterErrorInfo(Severity.ERROR, expression.getPosition(), e.getMessage()));
+        } finally {
+            context.temporalDepth--;
+        }
+    }
+
+    private static <T> T registerAt(List<T> registers, int depth, Supplier<T> supplier) {
+        while (registers.size() <= depth) {
+            registers.add(supplier.get());
+        }
+        return registers.get(depth);
+    }
+
+    private void evaluateDate(Expression expression, DateRegister register, int depth) {
+        if (!TemporalChainExpression.isDateOperation(expression)) {
+            register.load((Date) temporalOperand(expression));
+            return;
+        }
+        var operation = (SpecializedBinaryExpression) expression;
+        evaluateDate(operation.getLeftExpression(), register, depth);
+        boolean add = operation.getOperator() == SpecializedOperator.DATE_ADD_PERIOD;
+        Expression right = operation.getRightExpression();
+        if (TemporalChainExpression.isPeriodOperation(right)) {
+            PeriodRegister period = registerAt(context.periodRegisters, depth, PeriodRegister::new).clear();
+            evaluatePeriod(right, period, 1);
+            if (add) {
+                register.add(period);
+            } else {
+                register.subtract(period);
+            }
+        } else if (add) {
+            register.add((Period) temporalOperand(right));
+        } else {
+            register.subtract((Period) temporalOperand(right));
+        }
+    }
+
+    /**
+     * Period additions are done field by field, so nested ones are summed into the same register.
+     * @param sign -1 if the period is subtracted from the sum
+     */
+    private void evaluatePeriod(Expression expression, PeriodRegister register, int sign) {
+        if (!TemporalChainExpression.isPeriodOperation(expression)) {
+            register.add((Period) temporalOperand(expression), sign);
+            return;
+        }
+        var operation = (SpecializedBinaryExpression) expression;
+        if (operation.getOperator() == SpecializedOperator.DATE_SUBTRACT_DATE) {
+            Date end = (Date) temporalOperand(operation.getLeftExpression());
+            Date start = (Date) temporalOperand(operation.getRightExpression());
+            register.addDifference(end, start, sign);
+            return;
+        }
+        evaluatePeriod(operation.getLeftExpression(), register, sign);
+        evaluatePeriod(operation.getRightExpression(), register,
+                operation.getOperator() == SpecializedOperator.PERIOD_ADD ? sign : -sign);
+    }
+
+    /**
+     * Operands are only read by the chain, so literals are used without making their copy.
+     */
+    private Object temporalOperand(Expression expression) {
+        if (expression instanceof PeriodLiteralExpression) {
+            return ((PeriodLiteralExpression) expression).getValue();
+        }
+        if (expression instanceof DateLiteralExpression) {
+            return verifiedLiteral((DateLiteralExpression) expression);
+        }
+        expression.accept(this);
+        return context.lastResult.getValue();
+    }
+
+    @Override
+    public void visit(LocalComparisonExpression expression) {
+        context.lastResult = new ValueReference(compareLocals(expression));
+    }
+
+    private boolean compareLocals(LocalComparisonExpression expression) {
+        ValueReference left = findVariable(expression.getLeftName());
+        Object right = expression.getConstant();
+        if (expression.getRightName() != null) {
+            ValueReference rightVariable = findVariable(expression.getRightName());
+            right = rightVariable == null ? null : rightVariable.getValue();
+        }
+        if (left != null && left.getValue() instanceof Integer && right instanceof Integer) {
+            int leftValue = (Integer) left.getValue();
+            int rightValue = (Integer) right;
+            switch (expression.getOperator()) {
+                case EQUALS:
+                    return leftValue == rightValue;
+                case NOT_EQUAL:
+                    return leftValue != rightValue;
+                case LESS_THAN:
+                    return leftValue < rightValue;
+                case MORE_THAN:
+                    return leftValue > rightValue;
+                case LESS_OR_EQUAL_THAN:
+                    return leftValue <= rightValue;
+                case MORE_OR_EQUAL_THAN:
+                    return leftValue >= rightValue;
+            }
+        }
+        // other values and their errors are handled by the original comparison, which always gives a boolean
+        expression.getOriginal().accept(this);
+        return (Boolean) context.lastResult.getValue();
+    }
+
+    @Override
+    public void visit(IncrementLocalExpression expression) {
+        ValueReference variable = findVariable(expression.getName());
+        if (variable == null || !(variable.getValue() instanceof Integer)) {
+            expression.getOriginal().accept(this);
+            return;
+        }
+        variable.setValue((Integer) variable.getValue() + expression.getDelta());
+        context.lastResult = variable;
+    }
+
+    @Override
+    public void visit(AccumulateLocalExpression expression) {
+        accumulate(expression, false);
+    }
+
+    /**
+     * @param inPlace whether a period the variable owns may be changed in place, see Period.accumulate
+     */
+    private void accumulate(AccumulateLocalExpression expression, boolean inPlace) {
+        ValueReference variable = findVariable(expression.getName());
+        if (variable == null || variable.getValue() == null) {
+            // nothing was evaluated yet, the original assignment reports the missing value
+            expression.getOriginal().accept(this);
+            return;
+        }
+        expression.getOperand().accept(this);
+        Object operand = getLastResult(expression.getOperand().getPosition()).getValue();
+        Object value;
+        if (inPlace && variable.getValue() instanceof Period && operand instanceof Period) {
+            int sign = expression.getOperator() == AdditiveOperator.PLUS ? 1 : -1;
+            value = ((Period) variable.getValue()).accumulate(variable, (Period) operand, sign);
+        } else if (expression.getSpecializedOperator() != null) {
+            value = applySpecialized(expression.getSpecializedOperator(), variable.getValue(), operand,
+                    expression.getOriginal().getRight().getPosition());
+        } else {
+            value = addOrSubtract(expression.getOperator(), variable.getValue(), operand,
+                    expression.getOriginal().getRight().getPosition());
+        }
+        if (value == null) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            expression.getOriginal().getRight().getPosition(),
+                            String.format("Incompatible additive operands: %s +- %s",
+                                    variable.getValue().getClass().getSimpleName(), operand.getClass().getSimpleName())));
+        }
+        variable.setValue(value);
+        context.lastResult = variable;
     }
 
     @Override
@@ -297,9 +630,9 @@ public class Interpreter implements ProgramVisitor {
         expression.getExpression().accept(this);
         Object operand = getLastResult(expression.getExpression().getPosition()).getValue();
         if (operand instanceof Boolean && expression.getOperator() == NegationOperator.NOT) {
-            lastResult = new ValueReference(!(Boolean) lastResult.getValue());
+            context.lastResult = new ValueReference(!(Boolean) context.lastResult.getValue());
         } else if (operand instanceof Number && expression.getOperator() == NegationOperator.MINUS) {
-            lastResult = new ValueReference(OperationHandler.multiply(-1, lastResult.getValue()));
+            context.lastResult = new ValueReference(OperationHandler.multiply(-1, context.lastResult.getValue()));
         } else {
             errorManager.reportError(
                     new InterpreterErrorInfo(
@@ -311,147 +644,160 @@ public class Interpreter implements ProgramVisitor {
     }
 
 
-    private void invokePeriodGetter(Period period, String name, Position position) {
-        switch (name) {
-            case "year":
-                lastResult = period.getYearReference(); break;
-            case "month":
-                lastResult = period.getMonthReference(); break;
-            case "day":
-                lastResult = period.getDayReference(); break;
-            case "hour":
-                lastResult = period.getHourReference(); break;
-            case "minute":
-                lastResult = period.getMinuteReference(); break;
-            case "second":
-                lastResult = period.getSecondReference(); break;
-            default:
-                errorManager.reportError(
-                        new InterpreterErrorInfo(
-                                Severity.ERROR,
-                                position,
-                                String.format("Period does not have any field named \"%s\"", name)));
-        }
-    }
-
-    private void invokeDateGetter(Date date, String name, Position position) {
-        switch (name) {
-            case "year":
-                lastResult = date.getYearReference(); break;
-            case "month":
-                lastResult = date.getMonthReference(); break;
-            case "day":
-                lastResult = date.getDayReference(); break;
-            case "hour":
-                lastResult = date.getHourReference(); break;
-            case "minute":
-                lastResult = date.getMinuteReference(); break;
-            case "second":
-                lastResult = date.getSecondReference(); break;
-            default:
-                errorManager.reportError(
-                        new InterpreterErrorInfo(
-                                Severity.ERROR,
-                                position,
-                                String.format("Date does not have any field named \"%s\"", name)));
+    /**
+     * Sets the last result to the member of a Date or Period, a reference to it in case of a field.
+     * @param member null if the name is not a member of either of them
+     */
+    private void accessMember(Object object, Member member, String name, boolean method, Position position) {
+        ValueReference value = null;
+        if (member != null) {
+            value = object instanceof Date ? dateMember((Date) object, member) : periodMember((Period) object, member);
         }
+        if (value == null) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            position,
+                            String.format("%s does not have any %s named \"%s\"",
+                                    object.getClass().getSimpleName(), method ? "method" : "field", name)));
+        }
+        context.lastResult = value;
     }
 
-    @SuppressWarnings("unused")
-    private void invokePeriodMethod(Period period, String methodName, List<Object> arguments, Position position) {
-        //noinspection SwitchStatementWithTooFewBranches
-        switch (methodName) {
-            case "getDifference":
-                lastResult = period.getAbsolutePeriodDifferenceReference();
-                break;
+    private static ValueReference dateMember(Date date, Member member) {
+        switch (member) {
+            case YEAR:
+                return date.getYearReference();
+            case MONTH:
+                return date.getMonthReference();
+            case DAY:
+                return date.getDayReference();
+            case HOUR:
+                return date.getHourReference();
+            case MINUTE:
+                return date.getMinuteReference();
+            case SECOND:
+                return date.getSecondReference();
+            case CALCULATE_SECONDS_SINCE_NEW_ERA:
+                return new ValueReference(date.secondsSinceNewEra());
             default:
-                new InterpreterErrorInfo(
-                        Severity.ERROR,
-                        position,
-                        String.format("Period does not have any method named \"%s\"", methodName));
+                return null;
         }
     }
 
-    @SuppressWarnings("unused")
-    private void invokeDateMethod(Date date, String methodName, List<Object> arguments, Position position) {
-        //noinspection SwitchStatementWithTooFewBranches
-        switch (methodName) {
-            case "calculateSecondsSinceNewEra":
-                lastResult = new ValueReference(date.secondsSinceNewEra());
-                break;
+    private static ValueReference periodMember(Period period, Member member) {
+        switch (member) {
+            case YEAR:
+                return period.getYearReference();
+            case MONTH:
+                return period.getMonthReference();
+            case DAY:
+                return period.getDayReference();
+            case HOUR:
+                return period.getHourReference();
+            case MINUTE:
+                return period.getMinuteReference();
+            case SECOND:
+                return period.getSecondReference();
+            case GET_DIFFERENCE:
+                return period.getAbsolutePeriodDifferenceReference();
             default:
-                new InterpreterErrorInfo(
-                        Severity.ERROR,
-                        position,
-                        String.format("Date does not have any method named \"%s\"", methodName));
+                return null;
         }
     }
 
     @Override
     public void visit(AssignmentExpression expression) {
         var left = expression.getLeft();
-        verifyInstance(left, List.of(IdentifierExpression.class, MemberExpression.class), left.getPosition());
+        verifyInstance(left, List.of(IdentifierExpression.class, MemberExpression.class, MemberAccessExpression.class),
+                left.getPosition());
         expression.getRight().accept(this);
         var rightResult = getLastResult(expression.getRight().getPosition()).getValue();
         if (left instanceof IdentifierExpression) {
             left.accept(this);
             String identifierName = ((IdentifierExpression) left).getName();
-            if (lastResult.getValue() == null) {
+            if (context.lastResult.getValue() == null) {
                 addVariableToBlockContext(rightResult, identifierName);
             } else {
-                 lastResult.setValue(rightResult);
+                 context.lastResult.setValue(rightResult);
             }
             return;
         }
-        if (left instanceof MemberExpression) {
+        if (left instanceof MemberExpression || left instanceof MemberAccessExpression) {
             left.accept(this);
-            if (lastResult.getValue() == null) {
+            if (context.lastResult.getValue() == null) {
                 errorManager.reportError(
                         new InterpreterErrorInfo(
                                 Severity.ERROR,
                                 left.getPosition(),
                                 "Undefined access to an object"));
             }
-            lastResult.setValue(rightResult);
+            try {
+                context.lastResult.setValue(rightResult);
+            } catch (IllegalArgumentException e) {
+                errorManager.reportError(
+                        new InterpreterErrorInfo(
+                                Severity.ERROR,
+                                expression.getPosition(),
+                                e.getMessage()));
+            }
         }
 
     }
 
     private void addVariableToBlockContext(Object variable, String identifierName) {
-        callStack.peek().getBlockContexts().get(0).addVariable(identifierName, new ValueReference(variable));
+        context.callStack.peek().getBlockContexts().get(0).addVariable(identifierName, new ValueReference(variable));
     }
 
 
     @Override
     public void visit(MemberExpression expression) {
         expression.getObject().accept(this);
-//        verifyInstance(expression.getObject(), List.of(IdentifierExpression.class, FunctionCallExpression.class), expression.getPosition());
-        verifyInstance(lastResult.getValue(), List.of(Period.class, Date.class), expression.getPosition());
-        memberContext = moveLastResult(expression.getPosition());
-        expression.getMember().accept(this);
-
-
+        verifyInstance(context.lastResult.getValue(), List.of(Period.class, Date.class), expression.getPosition());
+        Object object = moveLastResult(expression.getPosition()).getValue();
+        Expression member = expression.getMember();
+        if (member instanceof FunctionCallExpression) {
+            var method = (FunctionCallExpression) member;
+            evaluateArguments(method.getArguments());
+            accessMember(object, Member.of(method.getName(), true), method.getName(), true, method.getPosition());
+        } else {
+            String name = ((IdentifierExpression) member).getName();
+            accessMember(object, Member.of(name, false), name, false, member.getPosition());
+        }
+    }
 
+    @Override
+    public void visit(MemberAccessExpression expression) {
+        expression.getObject().accept(this);
+        verifyInstance(context.lastResult.getValue(), List.of(Period.class, Date.class), expression.getPosition());
+        Object object = moveLastResult(expression.getPosition()).getValue();
+        evaluateArguments(expression.getArguments());
+        Member member = expression.getMember();
+        accessMember(object, member, member.getName(), member.isMethod(), expression.getMemberPosition());
     }
 
 
     @Override
     public void visit(IntLiteralExpression expression) {
-        lastResult = new ValueReference(expression.getValue());
+        context.lastResult = new ValueReference(expression.getValue());
     }
 
     @Override
     public void visit(DoubleLiteralExpression expression) {
-        lastResult = new ValueReference(expression.getValue());
+        context.lastResult = new ValueReference(expression.getValue());
     }
 
     @Override
     public void visit(StringLiteralExpression expression) {
-        lastResult = new ValueReference(expression.getValue());
+        context.lastResult = new ValueReference(expression.getValue());
     }
 
     @Override
     public void visit(DateLiteralExpression expression) {
+        context.lastResult = new ValueReference(new Date(verifiedLiteral(expression)));
+    }
+
+    private Date verifiedLiteral(DateLiteralExpression expression) {
         try {
             expression.getValue().verify();
         } catch (IllegalArgumentException e) {
@@ -461,180 +807,342 @@ public class Interpreter implements ProgramVisitor {
                             expression.getPosition(),
                             e.getMessage()));
         }
-        lastResult = new ValueReference(expression.getValue());
+        return expression.getValue();
     }
 
     @Override
     public void visit(PeriodLiteralExpression expression) {
-        lastResult = new ValueReference(expression.getValue());
+        context.lastResult = new ValueReference(new Period(expression.getValue()));
     }
 
     @Override
     public void visit(IdentifierExpression expression) {
-        if (memberContext != null) {
-            if (memberContext.getValue() instanceof Period) {
-                invokePeriodGetter((Period) memberContext.getValue(), expression.getName(), expression.getPosition());
-            }
-            if (memberContext.getValue() instanceof Date) {
-                invokeDateGetter((Date) memberContext.getValue(), expression.getName(), expression.getPosition());
-            }
-            memberContext = null;
-            return;
+        ValueReference value = findVariable(expression.getName());
+        if (value != null && value.getValue() instanceof Period) {
+            // the period may be seen by something else from now on
+            ((Period) value.getValue()).release();
         }
+        context.lastResult = value != null ? value : new ValueReference(null);
+    }
 
-        for (BlockContext context : callStack.peek().getBlockContexts()) {
-            ValueReference value = context.getLocalVariables().get(expression.getName());
+    /**
+     * @return reference to the variable visible in the current block, or null if there is no such variable
+     */
+    private ValueReference findVariable(String name) {
+        for (BlockContext blockContext : context.callStack.peek().getBlockContexts()) {
+            ValueReference value = blockContext.getLocalVariables().get(name);
             if (value != null) {
-                lastResult = value;
-                return;
+                return value;
             }
         }
-        lastResult = new ValueReference(null);
+        return null;
     }
 
     @Override
     public void visit(FunctionCallExpression expression) {
-        List<Object> arguments = new ArrayList<>(List.of());
+        List<Object> arguments = evaluateArguments(expression.getArguments());
+        // calls were resolved and their arguments counted by the SemanticChecker
+        FunctionDef function = context.functions.get(expression.getName());
+        call(function, arguments, context.pureFunctions.contains(function.getName()), expression.getPosition());
+    }
+
+    @Override
+    public void visit(BoundCallExpression expression) {
+        List<Object> arguments = evaluateArguments(expression.getOriginal().getArguments());
+        call(expression.getTarget(), arguments, expression.isMemoized(), expression.getPosition());
+    }
+
+    private List<Object> evaluateArguments(List<Expression> expressions) {
+        List<Object> arguments = new ArrayList<>(expressions.size());
+        for (var arg : expressions) {
+            arg.accept(this);
+            arguments.add(copyIfMutable(moveLastResult(arg.getPosition()).getValue()));
+        }
+        return arguments;
+    }
+
+    private void call(FunctionDef function, List<Object> arguments, boolean memoized, Position position) {
+        countStep(position);
+        verifyCallDepth(position);
+        if (memoized) {
+            callMemoized(function, arguments, position);
+            return;
+        }
+        context.callStack.push(new FunctionCallContext(arguments, position));
+        function.accept(this);
+        context.callStack.pop();
+    }
+
+    @Override
+    public void visit(CachedExpression expression) {
+        FunctionCallContext frame = context.callStack.peek();
+        Object value = frame.getTemporary(expression.getSlot());
+        if (value == null) {
+            expression.getExpression().accept(this);
+            value = copyIfMutable(context.lastResult.getValue());
+            frame.setTemporary(expression.getSlot(), value);
+        }
+        context.lastResult = new ValueReference(copyIfMutable(value));
+    }
+
+    @Override
+    public void visit(InlinedCallExpression expression) {
+        List<Object> arguments = new ArrayList<>(expression.getArguments().size());
         for (var arg : expression.getArguments()) {
             arg.accept(this);
-            var argLastResult = moveLastResult(arg.getPosition()).getValue();
-            if (argLastResult instanceof Period){
-                arguments.add(new Period ( (Period) argLastResult));
-            } else if (argLastResult instanceof Date){
-                arguments.add(new Date ( (Date) argLastResult));
-            } else {
-                arguments.add(argLastResult);
-            }
+            arguments.add(copyIfMutable(moveLastResult(arg.getPosition()).getValue()));
         }
-        if (memberContext != null) {
-            if (memberContext.getValue() instanceof Period) {
-                invokePeriodMethod(((Period) memberContext.getValue()), expression.getName(), arguments, expression.getPosition());
-            }
-            if (memberContext.getValue() instanceof Date) {
-                invokeDateMethod(((Date) memberContext.getValue()), expression.getName(), arguments, expression.getPosition());
-            }
-            memberContext = null;
-        } else {
-            FunctionDef function;
-            if ((function = functionDefs.get(expression.getName())) == null) {
-                errorManager.reportError(
-                        new InterpreterErrorInfo(
-                                Severity.ERROR,
-                                expression.getPosition(),
-                                String.format("Reference to an undefined function: %s", expression.getName())));
-                return;
+        prepareBlockContext();
+        for (int i = 0; i < arguments.size(); i++) {
+            addVariableToBlockContext(arguments.get(i), expression.getParameters().get(i));
+        }
+        for (var statement : expression.getStatements()) {
+            if (context.profiler != null) {
+                context.profiler.countStatement(statement);
             }
-            callStack.push(new FunctionCallContext(arguments, expression.getPosition()));
-            function.accept(this);
-            callStack.pop();
+            statement.accept(this);
+        }
+        Object value = null;
+        if (expression.getResult() != null) {
+            expression.getResult().accept(this);
+            value = context.lastResult.getValue();
+        }
+        deleteBlockContext();
+        context.lastResult = new ValueReference(value);
+    }
+
+    @Override
+    public void visit(TemporaryScopeStatement statement) {
+        context.callStack.peek().clearTemporaries(statement.getFirstSlot(), statement.getSlotCount());
+        statement.getStatement().accept(this);
+    }
+
+    private void callMemoized(FunctionDef function, List<Object> arguments, Position position) {
+        MemoCache cache = context.memoCaches.computeIfAbsent(function.getName(), name -> new MemoCache(config.getMemoCacheSize()));
+        if (cache.contains(arguments)) {
+            context.lastResult = new ValueReference(copyIfMutable(cache.get(arguments)));
+            return;
+        }
+        // the callee may modify its Date and Period parameters, so the key has to be a separate copy
+        List<Object> key = new ArrayList<>(arguments.size());
+        for (Object argument : arguments) {
+            key.add(copyIfMutable(argument));
         }
+        context.callStack.push(new FunctionCallContext(arguments, position));
+        function.accept(this);
+        context.callStack.pop();
+        Object result = context.lastResult == null ? null : context.lastResult.getValue();
+        cache.put(key, copyIfMutable(result));
     }
 
-    private void reportWarnIfArgsInReadFunction() {
-        if (callStack.peek().getArguments().size() != 0) {
+    private String readLine() {
+        String line = null;
+        try {
+            line = context.input.nextLine();
+        } catch (IOException e) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
-                            Severity.WARN,
-                            callStack.peek().getPosition(),
-                            "Read function does not take any arguments, but they were provided."
-                    )
-            );
+                            Severity.ERROR,
+                            context.callStack.peek().getPosition(),
+                            String.format("Could not read input: %s", e.getMessage())));
+        }
+        if (line == null) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            context.callStack.peek().getPosition(),
+                            "No more input to read."));
         }
+        return line;
     }
 
     @Override
     public void visit(ReadStringFunctionDef functionDef) {
-        reportWarnIfArgsInReadFunction();
-        Scanner scanner = new Scanner(System.in);
-        String stringValue = scanner.nextLine();
-        lastResult = new ValueReference(stringValue);
+        String stringValue = readLine();
+        context.lastResult = new ValueReference(stringValue);
     }
 
     @Override
     public void visit(ReadIntFunctionDef functionDef) {
-        reportWarnIfArgsInReadFunction();
-        Scanner scanner = new Scanner(System.in);
         Integer intValue = null;
         try {
-            intValue = Integer.parseInt(scanner.nextLine());
+            intValue = Integer.parseInt(readLine());
         } catch (NumberFormatException e) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
-                            callStack.peek().getPosition(),
+                            context.callStack.peek().getPosition(),
                             "Could not parse integer input."
                     )
             );
         }
-        lastResult = new ValueReference(intValue);
+        context.lastResult = new ValueReference(intValue);
     }
 
     @Override
     public void visit(ReadDoubleFunctionDef functionDef) {
-        reportWarnIfArgsInReadFunction();
-        Scanner scanner = new Scanner(System.in);
         Double doubleValue = null;
         try {
-            doubleValue = Double.parseDouble(scanner.nextLine());
+            doubleValue = Double.parseDouble(readLine());
         } catch (NumberFormatException e) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
-                            callStack.peek().getPosition(),
+                            context.callStack.peek().getPosition(),
                             "Could not parse double input."
                     )
             );
         }
-        lastResult = new ValueReference(doubleValue);
+        context.lastResult = new ValueReference(doubleValue);
     }
 
     @Override
     public void visit(ReadDateFunctionDef readDateFunctionDef) {
-        reportWarnIfArgsInReadFunction();
-        Scanner scanner = new Scanner(System.in);
-        Date dateValue;
-        if ((dateValue = Date.fromString(scanner.nextLine())) == null) {
+        Date dateValue = null;
+        try {
+            dateValue = Date.fromString(readLine(), context.temporalParser);
+        } catch (IllegalArgumentException e) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            context.callStack.peek().getPosition(),
+                            String.format("Could not parse date input: %s", e.getMessage())));
+        }
+        if (dateValue == null) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
-                            callStack.peek().getPosition(),
+                            context.callStack.peek().getPosition(),
                             "Could not parse date input."
                     )
             );
         }
-        lastResult = new ValueReference(dateValue);
+        context.lastResult = new ValueReference(dateValue);
     }
 
     @Override
     public void visit(ReadPeriodFunctionDef readPeriodFunctionDef) {
-        reportWarnIfArgsInReadFunction();
-        Scanner scanner = new Scanner(System.in);
         Period periodValue;
-        if ((periodValue = Period.fromString(scanner.nextLine())) == null) {
+        if ((periodValue = Period.fromString(readLine(), context.temporalParser, context.parsedPeriod)) == null) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.ERROR,
-                            callStack.peek().getPosition(),
+                            context.callStack.peek().getPosition(),
                             "Could not parse period input."
                     )
             );
         }
-        lastResult = new ValueReference(periodValue);
+        context.lastResult = new ValueReference(periodValue);
     }
 
     @Override
     public void visit(PrintFunctionDef functionDef) {
-        if (callStack.peek().getArguments().size() == 0) {
+        if (context.callStack.peek().getArguments().size() == 0) {
             errorManager.reportError(
                     new InterpreterErrorInfo(
                             Severity.WARN,
-                            callStack.peek().getPosition(),
+                            context.callStack.peek().getPosition(),
                             "Print function takes any number of arguments higher than 0, but they were not provided."
                     )
             );
         }
-        for (Object argument : callStack.peek().getArguments()) {
-            System.out.print(argument);
+        StringBuilder line = context.printBuffer;
+        line.setLength(0);
+        try {
+            for (Object argument : context.callStack.peek().getArguments()) {
+                if (argument instanceof Date) {
+                    ((Date) argument).appendTo(line);
+                } else if (argument instanceof Period) {
+                    ((Period) argument).appendTo(line);
+                } else if (argument instanceof Integer) {
+                    line.append((int) argument);
+                } else {
+                    line.append(argument);
+                }
+            }
+            context.output.append(line);
+        } catch (IOException e) {
+            errorManager.reportError(
+                    new InterpreterErrorInfo(
+                            Severity.ERROR,
+                            context.callStack.peek().getPosition(),
+                            String.format("Could not write output: %s", e.getMessage())));
+        }
+    }
+
+    @Override
+    public void visit(DateVectorFunctionDef functionDef) {
+        List<Object> arguments = context.callStack.peek().getArguments();
+        if (arguments.size() != 3 || !(arguments.get(0) instanceof Date) || !(arguments.get(1) instanceof Period)
+                || !(arguments.get(2) instanceof Integer)) {
+            reportBuiltinError("dateVector takes the first date, the period between dates and the number of dates.");
         }
+        DateVector vector = null;
+        try {
+            vector = DateVector.sequence((Date) arguments.get(0), (Period) arguments.get(1), (Integer) arguments.get(2));
+        } catch (IllegalArgumentException e) {
+            reportBuiltinError(e.getMessage());
+        }
+        context.lastResult = new ValueReference(vector);
+    }
+
+    @Override
+    public void visit(SizeFunctionDef functionDef) {
+        List<Object> arguments = context.callStack.peek().getArguments();
+        if (arguments.size() != 1 || vectorSize(arguments.get(0)) < 0) {
+            reportBuiltinError("size takes a single DateVector or PeriodVector.");
+        }
+        context.lastResult = new ValueReference(vectorSize(arguments.get(0)));
+    }
+
+    @Override
+    public void visit(AtFunctionDef functionDef) {
+        List<Object> arguments = context.callStack.peek().getArguments();
+        if (arguments.size() != 2 || vectorSize(arguments.get(0)) < 0 || !(arguments.get(1) instanceof Integer)) {
+            reportBuiltinError("at takes a DateVector or PeriodVector and an index.");
+        }
+        int index = (Integer) arguments.get(1);
+        int size = vectorSize(arguments.get(0));
+        if (index < 0 || size <= index) {
+            reportBuiltinError(String.format("Index %d out of bounds for a vector of size %d.", index, size));
+        }
+        Object element = arguments.get(0) instanceof DateVector
+                ? ((DateVector) arguments.get(0)).get(index) : ((PeriodVector) arguments.get(0)).get(index);
+        context.lastResult = new ValueReference(element);
+    }
+
+    @Override
+    public void visit(CountLessFunctionDef functionDef) {
+        List<Object> arguments = context.callStack.peek().getArguments();
+        Integer count = null;
+        if (arguments.size() == 2 && arguments.get(0) instanceof DateVector && arguments.get(1) instanceof Date) {
+            count = ((DateVector) arguments.get(0)).countLess((Date) arguments.get(1));
+        } else if (arguments.size() == 2 && arguments.get(0) instanceof PeriodVector && arguments.get(1) instanceof Period) {
+            count = ((PeriodVector) arguments.get(0)).countLess((Period) arguments.get(1));
+        } else {
+            reportBuiltinError("countLess takes a DateVector and a date or a PeriodVector and a period.");
+        }
+        context.lastResult = new ValueReference(count);
+    }
+
+    /**
+     * @return -1 if the value is not a vector
+     */
+    private static int vectorSize(Object value) {
+        if (value instanceof DateVector) {
+            return ((DateVector) value).size();
+        }
+        if (value instanceof PeriodVector) {
+            return ((PeriodVector) value).size();
+        }
+        return -1;
+    }
+
+    private void reportBuiltinError(String message) {
+        errorManager.reportError(
+                new InterpreterErrorInfo(
+                        Severity.ERROR,
+                        context.callStack.peek().getPosition(),
+                        message));
     }
 }
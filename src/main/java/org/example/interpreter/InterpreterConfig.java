@@ -0,0 +1,131 @@
+package org.example.interpreter;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+public class InterpreterConfig {
+    @Getter @Setter
+    private int memoCacheSize;
+    // budgets of a single run, negative values mean no limit
+    @Getter @Setter
+    private long maxSteps;
+    @Getter @Setter
+    private int maxCallDepth;
+    @Getter @Setter
+    private long timeoutMillis;
+    @Getter @Setter
+    private boolean hoistLoopInvariants;
+    @Getter @Setter
+    private boolean eliminateCommonSubexpressions;
+    @Getter @Setter
+    private boolean fuseSuperinstructions;
+    @Getter @Setter
+    private boolean scalarReplacement;
+    @Getter @Setter
+    private boolean removeDeadCode;
+    // removed code is reported as INFO diagnostics
+    @Getter @Setter
+    private boolean reportDeadCode;
+    @Getter @Setter
+    private boolean specializeTypes;
+    // max size of an inlined function body, 0 disables inlining
+    @Getter @Setter
+    private int inlineMaxSize;
+    // iterations after which a running while loop is specialized for the current types of its variables, 0 disables it
+    @Getter @Setter
+    private int osrThreshold;
+    // readDate() and readPeriod() also accept ISO 8601 dates and durations
+    @Getter @Setter
+    private boolean isoTemporalInput;
+    // not read from the properties file, Main sets it when profiling was requested on the command line;
+    // it records one run at a time, so runs with this config must not overlap
+    @Getter @Setter
+    private Profiler profiler;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    private final List<String> configPaths = Arrays.asList(
+            "src/main/java/org/example/interpreter/interpreter.properties",
+            "src/main/java/org/example/interpreter.properties",
+            "src/main/interpreter.properties");
+
+    public InterpreterConfig() {
+        Properties props = new Properties();
+        try {
+            Optional<String> maybePath = configPaths.stream()
+                    .filter(path -> Files.exists(Paths.get(path)))
+                    .findFirst();
+            if (maybePath.isEmpty()) {
+                throw new IOException("Missing interpreter config path");
+            }
+            InputStream input = new FileInputStream(maybePath.get());
+            props.load(input);
+        } catch (IOException ignored) {
+        } finally {
+            readProperties(props);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public InterpreterConfig(String configPath) {
+        Properties props = new Properties();
+        try {
+            InputStream input = new FileInputStream(configPath);
+            props.load(input);
+        } catch (IOException ignored) {
+        } finally {
+            readProperties(props);
+        }
+    }
+
+    private void readProperties(Properties props) {
+        memoCacheSize = readProperty(props, "MEMO_CACHE_SIZE", 0);
+        maxSteps = readProperty(props, "MAX_STEPS", -1L);
+        maxCallDepth = readProperty(props, "MAX_CALL_DEPTH", -1);
+        timeoutMillis = readProperty(props, "TIMEOUT_MILLIS", -1L);
+        hoistLoopInvariants = readProperty(props, "HOIST_LOOP_INVARIANTS", 1) != 0;
+        eliminateCommonSubexpressions = readProperty(props, "ELIMINATE_COMMON_SUBEXPRESSIONS", 1) != 0;
+        fuseSuperinstructions = readProperty(props, "FUSE_SUPERINSTRUCTIONS", 1) != 0;
+        scalarReplacement = readProperty(props, "SCALAR_REPLACEMENT", 1) != 0;
+        removeDeadCode = readProperty(props, "REMOVE_DEAD_CODE", 1) != 0;
+        reportDeadCode = readProperty(props, "REPORT_DEAD_CODE", 0) != 0;
+        specializeTypes = readProperty(props, "SPECIALIZE_TYPES", 1) != 0;
+        inlineMaxSize = readProperty(props, "INLINE_MAX_SIZE", 16);
+        osrThreshold = readProperty(props, "OSR_THRESHOLD", 1000);
+        isoTemporalInput = readProperty(props, "ISO_TEMPORAL_INPUT", 0) != 0;
+    }
+
+    @SuppressWarnings("SameParameterValue")
+    private static int readProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long readProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.interpreter;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MemoCache {
+    private final LinkedHashMap<List<Object>, Object> results;
+    @Getter
+    private long hits;
+
+    public MemoCache(int capacity) {
+        // access order turns the map into an LRU list, the eldest entry is the least recently used one
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public boolean contains(List<Object> arguments) {
+        return results.containsKey(arguments);
+    }
+
+    public Object get(List<Object> arguments) {
+        hits++;
+        return results.get(arguments);
+    }
+
+    public void put(List<Object> arguments, Object result) {
+        results.put(arguments, result);
+    }
+}
@@ -1,7 +1,10 @@
 package org.example.interpreter;
 
+import org.example.program.SpecializedOperator;
 import org.example.types.Date;
+import org.example.types.DateVector;
 import org.example.types.Period;
+import org.example.types.PeriodVector;
 
 public class OperationHandler {
     public static Object add(Object left, Object right){
@@ -17,7 +20,7 @@ public class OperationHandler {
         if (left instanceof Period && right instanceof Period) {
             return ((Period) left).add((Period) right);
         }
-        return null;
+        return addVectors(left, right, 1);
     }
 
     public static Object subtract(Object left, Object right){
@@ -36,6 +39,32 @@ public class OperationHandler {
         if (left instanceof Period && right instanceof Period) {
             return ((Period) left).subtract((Period) right);
         }
+        if (left instanceof DateVector && right instanceof Date) {
+            return ((DateVector) left).subtract((Date) right);
+        }
+        if (left instanceof DateVector && right instanceof DateVector) {
+            return ((DateVector) left).subtract((DateVector) right);
+        }
+        return addVectors(left, right, -1);
+    }
+
+    /**
+     * Adds or subtracts periods to every element of a vector, the whole vector at once.
+     * @param sign -1 to subtract the right operand
+     */
+    private static Object addVectors(Object left, Object right, int sign) {
+        if (left instanceof DateVector && right instanceof Period) {
+            return ((DateVector) left).add((Period) right, sign);
+        }
+        if (left instanceof DateVector && right instanceof PeriodVector) {
+            return ((DateVector) left).add((PeriodVector) right, sign);
+        }
+        if (left instanceof PeriodVector && right instanceof Period) {
+            return ((PeriodVector) left).add((Period) right, sign);
+        }
+        if (left instanceof PeriodVector && right instanceof PeriodVector) {
+            return ((PeriodVector) left).add((PeriodVector) right, sign);
+        }
         return null;
     }
 
@@ -52,6 +81,12 @@ public class OperationHandler {
         if (left instanceof Period && right instanceof Integer) {
             return ((Period) left).multiply((Integer) right);
         }
+        if (left instanceof Integer && right instanceof PeriodVector) {
+            return ((PeriodVector) right).multiply((Integer) left);
+        }
+        if (left instanceof PeriodVector && right instanceof Integer) {
+            return ((PeriodVector) left).multiply((Integer) right);
+        }
         return null;
     }
 
@@ -117,7 +152,7 @@ public class OperationHandler {
             return Period.compare((Period) left, (Period) right) == -1;
         }
         if (left instanceof Date && right instanceof Date){
-            return ((Date) left).secondsSinceNewEra() < ((Date) right).secondsSinceNewEra();
+            return ((Date) left).compareTo((Date) right) < 0;
         }
         return null;
     }
@@ -130,7 +165,7 @@ public class OperationHandler {
             return Period.compare((Period) left, (Period) right) == 1;
         }
         if (left instanceof Date && right instanceof Date){
-            return ((Date) left).secondsSinceNewEra() > ((Date) right).secondsSinceNewEra();
+            return ((Date) left).compareTo((Date) right) > 0;
         }
         return null;
     }
@@ -143,7 +178,7 @@ public class OperationHandler {
             return Period.compare((Period) left, (Period) right) != 1;
         }
         if (left instanceof Date && right instanceof Date){
-            return ((Date) left).secondsSinceNewEra() <= ((Date) right).secondsSinceNewEra();
+            return ((Date) left).compareTo((Date) right) <= 0;
         }
         return null;
     }
@@ -156,8 +191,68 @@ public class OperationHandler {
             return Period.compare((Period) left, (Period) right) != -1;
         }
         if (left instanceof Date && right instanceof Date){
-            return ((Date) left).secondsSinceNewEra() >= ((Date) right).secondsSinceNewEra();
+            return ((Date) left).compareTo((Date) right) >= 0;
         }
         return null;
     }
+
+    /**
+     * Applies an operation whose operand types were proven by the type inference. Numbers of a DOUBLE operation
+     * may still be Integers, since ints are promoted to doubles in mixed arithmetic.
+     */
+    public static Object apply(SpecializedOperator operator, Object left, Object right) throws ArithmeticException {
+        switch (operator) {
+            case INT_ADD:
+                return (Integer) left + (Integer) right;
+            case INT_SUBTRACT:
+                return (Integer) left - (Integer) right;
+            case INT_MULTIPLY:
+                return (Integer) left * (Integer) right;
+            case INT_DIVIDE:
+                return (Integer) left / (Integer) right;
+            case DOUBLE_ADD:
+                return ((Number) left).doubleValue() + ((Number) right).doubleValue();
+            case DOUBLE_SUBTRACT:
+                return ((Number) left).doubleValue() - ((Number) right).doubleValue();
+            case DOUBLE_MULTIPLY:
+                return ((Number) left).doubleValue() * ((Number) right).doubleValue();
+            case DOUBLE_DIVIDE:
+                return ((Number) left).doubleValue() / ((Number) right).doubleValue();
+            case DATE_ADD_PERIOD:
+                return ((Date) left).add((Period) right);
+            case DATE_SUBTRACT_PERIOD:
+                return ((Date) left).subtract((Period) right);
+            case DATE_SUBTRACT_DATE:
+                return ((Date) left).subtract((Date) right);
+            case PERIOD_ADD:
+                return ((Period) left).add((Period) right);
+            case PERIOD_SUBTRACT:
+                return ((Period) left).subtract((Period) right);
+            case INT_EQUALS:
+                return ((Integer) left).intValue() == (Integer) right;
+            case INT_NOT_EQUAL:
+                return ((Integer) left).intValue() != (Integer) right;
+            case INT_LESS_THAN:
+                return (Integer) left < (Integer) right;
+            case INT_MORE_THAN:
+                return (Integer) left > (Integer) right;
+            case INT_LESS_OR_EQUAL_THAN:
+                return (Integer) left <= (Integer) right;
+            case INT_MORE_OR_EQUAL_THAN:
+                return (Integer) left >= (Integer) right;
+            case DOUBLE_EQUALS:
+                return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+            case DOUBLE_NOT_EQUAL:
+                return ((Number) left).doubleValue() != ((Number) right).doubleValue();
+            case DOUBLE_LESS_THAN:
+                return ((Number) left).doubleValue() < ((Number) right).doubleValue();
+            case DOUBLE_MORE_THAN:
+                return ((Number) left).doubleValue() > ((Number) right).doubleValue();
+            case DOUBLE_LESS_OR_EQUAL_THAN:
+                return ((Number) left).doubleValue() <= ((Number) right).doubleValue();
+            case DOUBLE_MORE_OR_EQUAL_THAN:
+                return ((Number) left).doubleValue() >= ((Number) right).doubleValue();
+        }
+        throw new IllegalArgumentException(operator.name());
+    }
 }
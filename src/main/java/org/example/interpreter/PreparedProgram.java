@@ -0,0 +1,127 @@
+package org.example.interpreter;
+
+import lombok.Getter;
+import org.example.analysis.PurityAnalyzer;
+import org.example.analysis.SemanticChecker;
+import org.example.builtin.InputProvider;
+import org.example.error.ErrorManager;
+import org.example.error.InterpreterErrorInfo;
+import org.example.error.Severity;
+import org.example.optimizer.CommonSubexpressionEliminator;
+import org.example.optimizer.DeadCodeEliminator;
+import org.example.optimizer.FunctionInliner;
+import org.example.optimizer.Linker;
+import org.example.optimizer.LoopInvariantHoister;
+import org.example.optimizer.ScalarReplacer;
+import org.example.optimizer.SuperinstructionFuser;
+import org.example.optimizer.TypeSpecializer;
+import org.example.program.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Program checked and resolved once, ready to be executed any number of times.
+ * The interpreter relies on the checks of {@link SemanticChecker}, so it does not resolve calls or count arguments again.
+ * It is immutable, so executions may run concurrently, each with its own input and output,
+ * unless the config has a Profiler, which records one execution at a time.
+ */
+public class PreparedProgram {
+    // builtins do not keep any state, so a single instance of each is shared by all programs
+    static final Map<String, FunctionDef> BUILTIN_FUNCTIONS = Map.of(
+            "readString", new ReadStringFunctionDef(),
+            "readInt", new ReadIntFunctionDef(),
+            "readDouble", new ReadDoubleFunctionDef(),
+            "readDate", new ReadDateFunctionDef(),
+            "readPeriod", new ReadPeriodFunctionDef(),
+            "print", new PrintFunctionDef(),
+            "dateVector", new DateVectorFunctionDef(),
+            "size", new SizeFunctionDef(),
+            "at", new AtFunctionDef(),
+            "countLess", new CountLessFunctionDef());
+
+    @Getter
+    private final Program program;
+    @Getter
+    private final InterpreterConfig config;
+    @Getter
+    private final Map<String, FunctionDef> functions;
+    @Getter
+    private final Set<String> pureFunctions;
+
+    private PreparedProgram(Program program, InterpreterConfig config, Map<String, FunctionDef> functions, Set<String> pureFunctions) {
+        this.program = program;
+        this.config = config;
+        this.functions = functions;
+        this.pureFunctions = pureFunctions;
+    }
+
+    public static PreparedProgram prepare(Program program, ErrorManager errorManager, InterpreterConfig config) {
+        Map<String, FunctionDef> functions = new HashMap<>(BUILTIN_FUNCTIONS);
+        for (FunctionDef function : program.getFunctions().values()) {
+            if (functions.putIfAbsent(function.getName(), function) != null) {
+                errorManager.reportError(
+                        new InterpreterErrorInfo(
+                                Severity.ERROR,
+                                function.getPosition(),
+                                String.format("Non-unique function identifier (%s)", function.getName())));
+            }
+        }
+        SemanticChecker.check(program, functions, errorManager);
+        Set<String> pureFunctions = PurityAnalyzer.findPureFunctions(program);
+
+        Program optimized = program;
+        // inlined functions would disappear from the profile
+        if (config.getInlineMaxSize() > 0 && config.getProfiler() == null) {
+            optimized = FunctionInliner.optimize(optimized, config.getInlineMaxSize());
+        }
+        // after inlining, so that functions whose every call was inlined are dropped as well
+        if (config.isRemoveDeadCode()) {
+            optimized = DeadCodeEliminator.optimize(optimized, config.isReportDeadCode() ? errorManager : null);
+        }
+        if (config.isSpecializeTypes()) {
+            optimized = TypeSpecializer.optimize(optimized);
+        }
+        if (config.isHoistLoopInvariants()) {
+            optimized = LoopInvariantHoister.optimize(optimized, pureFunctions);
+        }
+        // after hoisting, which takes every cached expression for a loop invariant
+        if (config.isEliminateCommonSubexpressions()) {
+            optimized = CommonSubexpressionEliminator.optimize(optimized, pureFunctions);
+        }
+        // chains are made of the operations specialized by type
+        if (config.isScalarReplacement() && config.isSpecializeTypes()) {
+            optimized = ScalarReplacer.optimize(optimized);
+        }
+        // always the last optimization, the others do not look inside superinstructions;
+        // the profile reports the functions and statements of the program as written
+        if (config.isFuseSuperinstructions() && config.getProfiler() == null) {
+            optimized = SuperinstructionFuser.optimize(optimized);
+        }
+        // a call answered from the cache does not run the function, so the profile would not count it
+        Set<String> memoizedFunctions = config.getMemoCacheSize() > 0 && config.getProfiler() == null
+                ? pureFunctions : Set.of();
+        // calls are bound to the functions in the form they are executed in, which the profile would report;
+        // the Linker also links the operands of the superinstructions
+        if (config.getProfiler() == null) {
+            optimized = Linker.link(optimized, BUILTIN_FUNCTIONS, memoizedFunctions);
+        }
+        functions = new HashMap<>(BUILTIN_FUNCTIONS);
+        functions.putAll(optimized.getFunctions());
+        return new PreparedProgram(optimized, config, Collections.unmodifiableMap(functions), memoizedFunctions);
+    }
+
+    public static PreparedProgram prepare(Program program, ErrorManager errorManager) {
+        return prepare(program, errorManager, new InterpreterConfig());
+    }
+
+    /**
+     * Runs the main function once.
+     * @return value returned by main
+     */
+    public Object execute(ErrorManager errorManager, InputProvider input, Appendable output) {
+        return new Interpreter(errorManager, config).execute(this, input, output);
+    }
+}
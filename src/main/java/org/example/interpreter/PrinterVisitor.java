@@ -204,6 +204,102 @@ public class PrinterVisitor implements ProgramVisitor {
         spaces--;
     }
 
+    @Override
+    public void visit(CachedExpression expression) {
+        spaces++;
+        print(String.format("CachedExpression: slot %d", expression.getSlot()));
+        expression.getExpression().accept(this);
+        spaces--;
+    }
+
+    @Override
+    public void visit(TemporaryScopeStatement statement) {
+        spaces++;
+        print(String.format("TemporaryScope: slots %d-%d",
+                statement.getFirstSlot(), statement.getFirstSlot() + statement.getSlotCount() - 1));
+        statement.getStatement().accept(this);
+        spaces--;
+    }
+
+    @Override
+    public void visit(InlinedCallExpression expression) {
+        spaces++;
+        print(String.format("InlinedCall: %s(%s)", expression.getName(), String.join(", ", expression.getParameters())));
+        for (var argument : expression.getArguments()) {
+            argument.accept(this);
+        }
+        print("BODY");
+        for (var statement : expression.getStatements()) {
+            statement.accept(this);
+        }
+        if (expression.getResult() != null) {
+            print("RESULT");
+            expression.getResult().accept(this);
+        }
+        spaces--;
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        spaces++;
+        print(expression.getClass().getSimpleName());
+        expression.getLeftExpression().accept(this);
+        printIndented(expression.getOperator().name());
+        expression.getRightExpression().accept(this);
+        spaces--;
+    }
+
+    @Override
+    public void visit(LocalComparisonExpression expression) {
+        spaces++;
+        print(String.format("LocalComparisonExpression: %s %s %s", expression.getLeftName(), expression.getOperator().name(),
+                expression.getRightName() != null ? expression.getRightName() : String.valueOf(expression.getConstant())));
+        spaces--;
+    }
+
+    @Override
+    public void visit(IncrementLocalExpression expression) {
+        spaces++;
+        print(String.format("IncrementLocalExpression: %s by %d", expression.getName(), expression.getDelta()));
+        spaces--;
+    }
+
+    @Override
+    public void visit(AccumulateLocalExpression expression) {
+        spaces++;
+        print(String.format("AccumulateLocalExpression: %s %s", expression.getName(), expression.getOperator().name()));
+        expression.getOperand().accept(this);
+        spaces--;
+    }
+
+    @Override
+    public void visit(BoundCallExpression expression) {
+        spaces++;
+        print(expression.getClass().getSimpleName());
+        print(expression.getTarget().getName());
+        spaces--;
+    }
+
+    @Override
+    public void visit(MemberAccessExpression expression) {
+        spaces++;
+        print(expression.getClass().getSimpleName());
+        expression.getObject().accept(this);
+        printIndented("MEMBER " + expression.getMember().getName());
+        for (var argument : expression.getArguments()) {
+            argument.accept(this);
+        }
+        spaces--;
+    }
+
+    @Override
+    public void visit(TemporalChainExpression expression) {
+        spaces++;
+        print(expression.getClass().getSimpleName());
+        expression.getOriginal().accept(this);
+        spaces--;
+    }
+
     @Override
     public void visit(ReadStringFunctionDef functionDef) {
         spaces++;
@@ -246,6 +342,34 @@ public class PrinterVisitor implements ProgramVisitor {
         spaces--;
     }
 
+    @Override
+    public void visit(DateVectorFunctionDef functionDef) {
+        spaces++;
+        print(String.format("FunctionDef: %s", functionDef.getName()));
+        spaces--;
+    }
+
+    @Override
+    public void visit(SizeFunctionDef functionDef) {
+        spaces++;
+        print(String.format("FunctionDef: %s", functionDef.getName()));
+        spaces--;
+    }
+
+    @Override
+    public void visit(AtFunctionDef functionDef) {
+        spaces++;
+        print(String.format("FunctionDef: %s", functionDef.getName()));
+        spaces--;
+    }
+
+    @Override
+    public void visit(CountLessFunctionDef functionDef) {
+        spaces++;
+        print(String.format("FunctionDef: %s", functionDef.getName()));
+        spaces--;
+    }
+
     void print(String string){
         System.out.print("  ".repeat(spaces));
         System.out.println(string);
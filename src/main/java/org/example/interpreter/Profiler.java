@@ -0,0 +1,141 @@
+package org.example.interpreter;
+
+import lombok.Getter;
+import org.example.program.Statement;
+import org.example.program.UserFunctionDef;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Collects per-function and per-statement statistics of interpreter runs.
+ * The interpreter only calls it when profiling was requested, otherwise the profiler reference stays null.
+ * <p>
+ * Its state is not synchronized, so it records one run at a time: a run that starts while another one
+ * is being recorded fails, see {@link #startRun()}. Runs after each other add up in the same profile.
+ */
+public class Profiler {
+    private final Map<UserFunctionDef, FunctionStats> functionStats = new IdentityHashMap<>();
+    private final Map<Statement, long[]> statementCounts = new IdentityHashMap<>();
+    private final Map<String, Long> collapsedStacks = new HashMap<>();
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private boolean recording;
+
+    public static class FunctionStats {
+        @Getter
+        private final UserFunctionDef function;
+        @Getter
+        private long calls;
+        @Getter
+        private long totalNanos;
+        @Getter
+        private long selfNanos;
+        private int activeCalls;
+
+        private FunctionStats(UserFunctionDef function) {
+            this.function = function;
+        }
+    }
+
+    private static class Frame {
+        private final FunctionStats stats;
+        private final String stack;
+        private final long start;
+        private long childNanos;
+
+        private Frame(FunctionStats stats, String stack, long start) {
+            this.stats = stats;
+            this.stack = stack;
+            this.start = start;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if another run is being recorded
+     */
+    public synchronized void startRun() {
+        if (recording) {
+            throw new IllegalStateException("The profiler is already recording another run");
+        }
+        recording = true;
+    }
+
+    public synchronized void endRun() {
+        recording = false;
+        frames.clear();
+    }
+
+    public void enterFunction(UserFunctionDef function) {
+        FunctionStats stats = functionStats.computeIfAbsent(function, FunctionStats::new);
+        stats.calls++;
+        stats.activeCalls++;
+        String stack = frames.isEmpty() ? function.getName() : frames.peek().stack + ";" + function.getName();
+        frames.push(new Frame(stats, stack, System.nanoTime()));
+    }
+
+    public void exitFunction() {
+        Frame frame = frames.pop();
+        long elapsed = System.nanoTime() - frame.start;
+        long self = elapsed - frame.childNanos;
+        frame.stats.activeCalls--;
+        // time of a recursive call is already included in the outermost call of the same function
+        if (frame.stats.activeCalls == 0) {
+            frame.stats.totalNanos += elapsed;
+        }
+        frame.stats.selfNanos += self;
+        collapsedStacks.merge(frame.stack, self, Long::sum);
+        if (!frames.isEmpty()) {
+            frames.peek().childNanos += elapsed;
+        }
+    }
+
+    public void countStatement(Statement statement) {
+        statementCounts.computeIfAbsent(statement, s -> new long[1])[0]++;
+    }
+
+    public List<FunctionStats> getFunctionStats() {
+        List<FunctionStats> stats = new ArrayList<>(functionStats.values());
+        stats.sort(Comparator.comparingLong(FunctionStats::getSelfNanos).reversed());
+        return stats;
+    }
+
+    public long getStatementCount(Statement statement) {
+        long[] count = statementCounts.get(statement);
+        return count == null ? 0 : count[0];
+    }
+
+    public void printReport(PrintStream out) {
+        out.println("\nProfile: ");
+        out.printf("%-24s %10s %14s %14s\n", "Function", "Calls", "Total [ms]", "Self [ms]");
+        for (var stats : getFunctionStats()) {
+            out.printf("%-24s %10d %14.3f %14.3f\n",
+                    stats.getFunction().getName(),
+                    stats.getCalls(),
+                    stats.getTotalNanos() / 1e6,
+                    stats.getSelfNanos() / 1e6);
+        }
+
+        List<Map.Entry<Statement, long[]>> statements = new ArrayList<>(statementCounts.entrySet());
+        statements.sort(Comparator.comparingLong((Map.Entry<Statement, long[]> e) -> e.getValue()[0]).reversed());
+        out.printf("\n%-30s %12s %s\n", "Position", "Executions", "Statement");
+        for (var entry : statements) {
+            out.printf("%-30s %12d %s\n",
+                    entry.getKey().getPosition(),
+                    entry.getValue()[0],
+                    entry.getKey().getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Writes self times in the collapsed stack format ("main;outer;inner nanoseconds"), one stack per line,
+     * which can be turned into a flame graph with flamegraph.pl or speedscope.
+     */
+    public void writeCollapsedStacks(Appendable out) throws IOException {
+        List<String> stacks = new ArrayList<>(collapsedStacks.keySet());
+        Collections.sort(stacks);
+        for (String stack : stacks) {
+            out.append(stack).append(' ').append(String.valueOf(collapsedStacks.get(stack))).append('\n');
+        }
+    }
+}
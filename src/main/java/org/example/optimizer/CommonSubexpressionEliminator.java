@@ -0,0 +1,351 @@
+package org.example.optimizer;
+
+import org.example.analysis.TreeWalker;
+import org.example.program.*;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Common subexpression elimination within a block. Structurally equal expressions of the block's own statements
+ * that have no side effects and whose variables are not assigned in between share a single {@link CachedExpression}.
+ * The first statement of the block is wrapped in a {@link TemporaryScopeStatement}, so the values are computed again
+ * every time the block runs.
+ * <p>
+ * An expression has no side effects if it does not assign anything and calls only pure user functions,
+ * see PurityAnalyzer; builtins read the input or write the output, so calling them is never pure.
+ * Nested blocks and loop conditions are handled as separate blocks, only the variables they assign are taken
+ * into account. Assigning a member of a Date or Period invalidates every expression that reads a variable,
+ * since the same object may be shared by several variables.
+ */
+public class CommonSubexpressionEliminator extends TreeRewriter {
+    private final Set<String> pureFunctions;
+    private int nextSlot;
+
+    public CommonSubexpressionEliminator(Set<String> pureFunctions) {
+        this.pureFunctions = pureFunctions;
+    }
+
+    public static Program optimize(Program program, Set<String> pureFunctions) {
+        return new CommonSubexpressionEliminator(pureFunctions).rewrite(program);
+    }
+
+    @Override
+    public void visit(UserFunctionDef functionDef) {
+        nextSlot = Temporaries.firstFreeSlot(functionDef);
+        super.visit(functionDef);
+    }
+
+    @Override
+    public void visit(Block block) {
+        super.visit(block);
+        Block rewritten = (Block) result;
+        var scanner = new OccurrenceScanner();
+        for (var statement : rewritten.getStatements()) {
+            scanner.rewrite(statement);
+        }
+        if (scanner.shared.isEmpty()) {
+            result = rewritten;
+            return;
+        }
+        int firstSlot = nextSlot;
+        var replacer = new SharedReplacer(scanner.shared);
+        List<Statement> statements = new ArrayList<>(rewritten.getStatements().size());
+        for (var statement : rewritten.getStatements()) {
+            statements.add(replacer.rewrite(statement));
+        }
+        statements.set(0, new TemporaryScopeStatement(statements.get(0), firstSlot, nextSlot - firstSlot));
+        result = new Block(statements, rewritten.getPosition());
+    }
+
+    /**
+     * Variables read by an expression and whether it can have side effects.
+     */
+    private class Operands extends TreeWalker {
+        private final Set<String> variables = new HashSet<>();
+        private boolean pure = true;
+
+        @Override
+        public void visit(IdentifierExpression expression) {
+            variables.add(expression.getName());
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            pure = false;
+        }
+
+        @Override
+        public void visit(FunctionCallExpression expression) {
+            pure &= pureFunctions.contains(expression.getName());
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            pure &= pureFunctions.contains(expression.getName());
+            // the body uses only its own renamed variables
+            for (var argument : expression.getArguments()) {
+                argument.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(MemberExpression expression) {
+            // method arguments are evaluated while the member's object is being accessed, so they are left alone
+            pure &= !(expression.getMember() instanceof FunctionCallExpression)
+                    || ((FunctionCallExpression) expression.getMember()).getArguments().isEmpty();
+            expression.getObject().accept(this);
+        }
+    }
+
+    /**
+     * Finds expressions that occur more than once while their operands keep their values.
+     * It only walks the tree, the result of the rewrite is not used.
+     */
+    private class OccurrenceScanner extends TreeRewriter {
+        private final Map<String, List<Expression>> available = new HashMap<>();
+        private final Map<String, Set<String>> availableVariables = new HashMap<>();
+        // every shared expression mapped to the first one of its group
+        private final Map<Expression, Expression> shared = new IdentityHashMap<>();
+
+        @Override
+        protected Expression rewrite(Expression expression) {
+            if (expression != null && Temporaries.isWorthCaching(expression)) {
+                var operands = new Operands();
+                expression.accept(operands);
+                if (operands.pure) {
+                    String key = StructuralKey.of(expression);
+                    List<Expression> group = available.computeIfAbsent(key, k -> new ArrayList<>());
+                    availableVariables.put(key, operands.variables);
+                    group.add(expression);
+                    if (group.size() > 1) {
+                        for (var occurrence : group) {
+                            shared.put(occurrence, group.get(0));
+                        }
+                    }
+                }
+            }
+            return super.rewrite(expression);
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            rewrite(expression.getRight());
+            if (expression.getLeft() instanceof IdentifierExpression) {
+                invalidate(Set.of(((IdentifierExpression) expression.getLeft()).getName()), false);
+            } else {
+                rewrite(((MemberExpression) expression.getLeft()).getObject());
+                invalidate(Set.of(), true);
+            }
+            result = expression;
+        }
+
+        @Override
+        public void visit(MemberExpression expression) {
+            rewrite(expression.getObject());
+            result = expression;
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            // bodies are shared by all call sites, so only the arguments belong to this block
+            rewriteExpressions(expression.getArguments());
+            result = expression;
+        }
+
+        @Override
+        public void visit(CachedExpression expression) {
+            // already computed at most once
+            result = expression;
+        }
+
+        @Override
+        public void visit(IfStatement statement) {
+            rewrite(statement.getCondition());
+            invalidate(statement.getIfBlock()::accept);
+            if (statement.getElseBlock() != null) {
+                invalidate(statement.getElseBlock()::accept);
+            }
+            result = statement;
+        }
+
+        @Override
+        public void visit(WhileStatement statement) {
+            invalidate(statement::accept);
+            result = statement;
+        }
+
+        private void invalidate(Consumer<ProgramVisitor> nested) {
+            var writes = new TreeWalker() {
+                final Set<String> variables = new HashSet<>();
+                boolean memberAssigned;
+
+                @Override
+                public void visit(AssignmentExpression expression) {
+                    if (expression.getLeft() instanceof IdentifierExpression) {
+                        variables.add(((IdentifierExpression) expression.getLeft()).getName());
+                    } else {
+                        memberAssigned = true;
+                    }
+                    super.visit(expression);
+                }
+            };
+            nested.accept(writes);
+            invalidate(writes.variables, writes.memberAssigned);
+        }
+
+        private void invalidate(Set<String> variables, boolean allVariables) {
+            available.keySet().removeIf(key -> {
+                Set<String> read = availableVariables.get(key);
+                return allVariables ? !read.isEmpty() : !Collections.disjoint(read, variables);
+            });
+        }
+    }
+
+    private class SharedReplacer extends TreeRewriter {
+        private final Map<Expression, Expression> shared;
+        private final Map<Expression, Integer> slots = new IdentityHashMap<>();
+
+        SharedReplacer(Map<Expression, Expression> shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        protected Expression rewrite(Expression expression) {
+            Expression first = expression == null ? null : shared.get(expression);
+            if (first != null) {
+                int slot = slots.computeIfAbsent(first, e -> nextSlot++);
+                return new CachedExpression(super.rewrite(expression), slot);
+            }
+            return super.rewrite(expression);
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            // the target of an assignment has to stay a reference
+            Expression right = rewrite(expression.getRight());
+            result = right == expression.getRight() ? expression
+                    : new AssignmentExpression(expression.getLeft(), right, expression.getPosition());
+        }
+
+        @Override
+        public void visit(Block block) {
+            // already done as a block of its own
+            result = block;
+        }
+
+        @Override
+        public void visit(WhileStatement statement) {
+            result = statement;
+        }
+    }
+
+    /**
+     * Text that is equal for two expressions if and only if they are structurally equal.
+     */
+    private static class StructuralKey extends TreeWalker {
+        private final StringBuilder key = new StringBuilder();
+
+        static String of(Expression expression) {
+            var builder = new StructuralKey();
+            expression.accept(builder);
+            return builder.key.toString();
+        }
+
+        private void node(String name, Runnable children) {
+            key.append(name).append('(');
+            children.run();
+            key.append(')');
+        }
+
+        @Override
+        public void visit(OrExpression expression) {
+            node("or", () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(AndExpression expression) {
+            node("and", () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(ComparativeExpression expression) {
+            node(expression.getOperator().name(), () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(AdditiveExpression expression) {
+            node(expression.getOperator().name(), () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(MultiplicativeExpression expression) {
+            node(expression.getOperator().name(), () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(SpecializedBinaryExpression expression) {
+            node(expression.getOperator().name(), () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(NegationExpression expression) {
+            node(expression.getOperator().name(), () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(MemberExpression expression) {
+            node("member", () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(IntLiteralExpression expression) {
+            key.append("int:").append(expression.getValue()).append(';');
+        }
+
+        @Override
+        public void visit(DoubleLiteralExpression expression) {
+            key.append("double:").append(expression.getValue()).append(';');
+        }
+
+        @Override
+        public void visit(StringLiteralExpression expression) {
+            key.append("string:").append(expression.getValue().length()).append(':').append(expression.getValue());
+        }
+
+        @Override
+        public void visit(DateLiteralExpression expression) {
+            key.append("date:").append(expression.getValue()).append(';');
+        }
+
+        @Override
+        public void visit(PeriodLiteralExpression expression) {
+            key.append("period:").append(expression.getValue()).append(';');
+        }
+
+        @Override
+        public void visit(IdentifierExpression expression) {
+            key.append("id:").append(expression.getName()).append(';');
+        }
+
+        @Override
+        public void visit(FunctionCallExpression expression) {
+            node("call:" + expression.getName(), () -> super.visit(expression));
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            node("call:" + expression.getName(), () -> {
+                for (var argument : expression.getArguments()) {
+                    argument.accept(this);
+                }
+            });
+        }
+
+        @Override
+        public void visit(CachedExpression expression) {
+            key.append("cached:").append(expression.getSlot()).append(';');
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.example.optimizer;
+
+import org.example.analysis.CallGraph;
+import org.example.analysis.TreeWalker;
+import org.example.error.ErrorManager;
+import org.example.error.InterpreterErrorInfo;
+import org.example.error.Severity;
+import org.example.interpreter.OperationHandler;
+import org.example.program.*;
+import org.example.source.Position;
+
+import java.util.*;
+
+/**
+ * Removes code that can never run: statements after a return, branches of if statements whose condition
+ * is made of literals only, and user functions that cannot be reached from main.
+ * <p>
+ * A remaining branch is merged into the enclosing block only if it does not assign any variable,
+ * since variables it declares would otherwise outlive the branch. Other branches keep their own block
+ * behind an if statement that evaluates to true.
+ */
+public class DeadCodeEliminator extends TreeRewriter {
+    // null if the removed code should not be reported
+    private final ErrorManager errorManager;
+
+    public DeadCodeEliminator(ErrorManager errorManager) {
+        this.errorManager = errorManager;
+    }
+
+    /**
+     * @param errorManager receives an INFO diagnostic for each removed piece of code, may be null
+     */
+    public static Program optimize(Program program, ErrorManager errorManager) {
+        return new DeadCodeEliminator(errorManager).rewrite(program);
+    }
+
+    @Override
+    public void visit(Program program) {
+        super.visit(program);
+        Program rewritten = (Program) result;
+        // calls in pruned code do not count
+        Set<String> reachable = CallGraph.of(rewritten).getReachable("main");
+        Map<String, FunctionDef> functions = new HashMap<>();
+        for (var function : rewritten.getFunctions().values()) {
+            if (reachable.contains(function.getName())) {
+                functions.put(function.getName(), function);
+            } else {
+                report(function.getPosition(), String.format("Function %s is never called and was removed", function.getName()));
+            }
+        }
+        result = functions.size() == rewritten.getFunctions().size() ? rewritten : new Program(functions);
+    }
+
+    @Override
+    public void visit(Block block) {
+        List<Statement> statements = rewriteStatements(block.getStatements());
+        result = statements == block.getStatements() ? block : new Block(statements, block.getPosition());
+    }
+
+    @Override
+    public void visit(InlinedCallExpression expression) {
+        List<Expression> arguments = rewriteExpressions(expression.getArguments());
+        List<Statement> statements = rewriteStatements(expression.getStatements());
+        Expression inlinedResult = rewrite(expression.getResult());
+        result = arguments == expression.getArguments() && statements == expression.getStatements()
+                && inlinedResult == expression.getResult()
+                ? expression
+                : new InlinedCallExpression(expression.getName(), expression.getParameters(), arguments, statements,
+                        inlinedResult, expression.getPosition());
+    }
+
+    /**
+     * Rewrites statements of a single block. A rewritten if statement may leave a Block to merge in or null.
+     */
+    private List<Statement> rewriteStatements(List<Statement> original) {
+        List<Statement> statements = new ArrayList<>(original.size());
+        boolean changed = false;
+        for (int i = 0; i < original.size(); i++) {
+            Statement statement = original.get(i);
+            statement.accept(this);
+            if (result instanceof Block) {
+                statements.addAll(((Block) result).getStatements());
+                changed = true;
+            } else if (result != null) {
+                changed |= result != statement;
+                statements.add((Statement) result);
+            } else {
+                changed = true;
+            }
+            if (i < original.size() - 1 && !statements.isEmpty() && alwaysReturns(statements.get(statements.size() - 1))) {
+                report(original.get(i + 1).getPosition(), "Unreachable statements after return were removed");
+                changed = true;
+                break;
+            }
+        }
+        return changed ? statements : original;
+    }
+
+    /**
+     * A block stops at the first statement that sets the returned flag of the call.
+     */
+    private static boolean alwaysReturns(Statement statement) {
+        if (statement instanceof ReturnStatement) {
+            return true;
+        }
+        if (statement instanceof IfStatement) {
+            var ifStatement = (IfStatement) statement;
+            return ifStatement.getElseBlock() != null
+                    && alwaysReturns(ifStatement.getIfBlock())
+                    && alwaysReturns(ifStatement.getElseBlock());
+        }
+        return false;
+    }
+
+    private static boolean alwaysReturns(Block block) {
+        return block.getStatements().stream().anyMatch(DeadCodeEliminator::alwaysReturns);
+    }
+
+    @Override
+    public void visit(IfStatement statement) {
+        Boolean condition = constantCondition(statement.getCondition());
+        if (condition == null) {
+            super.visit(statement);
+            return;
+        }
+        Block taken = condition ? statement.getIfBlock() : statement.getElseBlock();
+        Block removed = condition ? statement.getElseBlock() : statement.getIfBlock();
+        if (removed != null) {
+            report(removed.getPosition(), "Branch is never taken and was removed");
+        }
+        if (taken == null) {
+            result = null;
+            return;
+        }
+        Block block = rewrite(taken);
+        if (!assignsVariables(block)) {
+            result = block;
+        } else if (condition) {
+            result = new IfStatement(statement.getCondition(), block, null, statement.getPosition());
+        } else {
+            Expression negated = new NegationExpression(NegationOperator.NOT, statement.getCondition(),
+                    statement.getCondition().getPosition());
+            result = new IfStatement(negated, block, null, statement.getPosition());
+        }
+    }
+
+    private static boolean assignsVariables(Block block) {
+        var assignments = new TreeWalker() {
+            boolean found = false;
+
+            @Override
+            public void visit(AssignmentExpression expression) {
+                found |= expression.getLeft() instanceof IdentifierExpression;
+                super.visit(expression);
+            }
+        };
+        block.accept(assignments);
+        return assignments.found;
+    }
+
+    /**
+     * @return value of a condition made of literals, or null if it depends on the run or would fail
+     */
+    private static Boolean constantCondition(Expression expression) {
+        if (expression instanceof NegationExpression) {
+            var negation = (NegationExpression) expression;
+            Boolean operand = constantCondition(negation.getExpression());
+            return negation.getOperator() == NegationOperator.NOT && operand != null ? !operand : null;
+        }
+        if (expression instanceof AndExpression) {
+            var and = (AndExpression) expression;
+            Boolean left = constantCondition(and.getLeftExpression());
+            Boolean right = constantCondition(and.getRightExpression());
+            // the right operand is not evaluated if the left one is false
+            if (Boolean.FALSE.equals(left)) {
+                return false;
+            }
+            return left != null && right != null ? right : null;
+        }
+        if (expression instanceof OrExpression) {
+            var or = (OrExpression) expression;
+            Boolean left = constantCondition(or.getLeftExpression());
+            Boolean right = constantCondition(or.getRightExpression());
+            if (Boolean.TRUE.equals(left)) {
+                return true;
+            }
+            return left != null && right != null ? right : null;
+        }
+        if (expression instanceof ComparativeExpression) {
+            var comparison = (ComparativeExpression) expression;
+            Object left = literalValue(comparison.getLeftExpression());
+            Object right = literalValue(comparison.getRightExpression());
+            if (left == null || right == null) {
+                return null;
+            }
+            switch (comparison.getOperator()) {
+                case EQUALS:
+                    return OperationHandler.equals(left, right);
+                case NOT_EQUAL:
+                    return OperationHandler.notEqual(left, right);
+                case LESS_THAN:
+                    return OperationHandler.lessThan(left, right);
+                case MORE_THAN:
+                    return OperationHandler.moreThan(left, right);
+                case LESS_OR_EQUAL_THAN:
+                    return OperationHandler.lessOrEqualThan(left, right);
+                case MORE_OR_EQUAL_THAN:
+                    return OperationHandler.moreOrEqualThan(left, right);
+            }
+        }
+        return null;
+    }
+
+    private static Object literalValue(Expression expression) {
+        if (expression instanceof IntLiteralExpression) {
+            return ((IntLiteralExpression) expression).getValue();
+        }
+        if (expression instanceof DoubleLiteralExpression) {
+            return ((DoubleLiteralExpression) expression).getValue();
+        }
+        if (expression instanceof StringLiteralExpression) {
+            return ((StringLiteralExpression) expression).getValue();
+        }
+        return null;
+    }
+
+    private void report(Position position, String message) {
+        if (errorManager != null) {
+            errorManager.reportError(new InterpreterErrorInfo(Severity.INFO, position, message));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.optimizer;
+
+import org.example.analysis.CallGraph;
+import org.example.analysis.TreeWalker;
+import org.example.program.*;
+
+import java.util.*;
+
+/**
+ * Replaces calls of small user functions with {@link InlinedCallExpression}s, which run the function's body
+ * in a block of the caller instead of a new function call.
+ * A function is inlined if it is not recursive, its body has at most {@code maxSize} nodes, and the only return
+ * statement is the last statement of the body (or there is none).
+ * Variables of the inlined body are renamed with the {@code <function>#} prefix; '#' cannot appear in identifiers
+ * of the source code, so the body cannot see or modify variables of the caller.
+ */
+public class FunctionInliner extends TreeRewriter {
+    private final Map<String, UserFunctionDef> candidates = new HashMap<>();
+    private final Map<String, InlinedCallExpression> inlinedBodies = new HashMap<>();
+
+    public FunctionInliner(Program program, int maxSize) {
+        CallGraph callGraph = CallGraph.of(program);
+        for (var function : program.getFunctions().values()) {
+            if (function instanceof UserFunctionDef
+                    && !callGraph.isRecursive(function.getName())
+                    && hasSingleExit(function.getBody())
+                    && NodeCounter.count(function.getBody()) <= maxSize) {
+                candidates.put(function.getName(), (UserFunctionDef) function);
+            }
+        }
+    }
+
+    public static Program optimize(Program program, int maxSize) {
+        return new FunctionInliner(program, maxSize).rewrite(program);
+    }
+
+    private static boolean hasSingleExit(Block body) {
+        var returns = new TreeWalker() {
+            int count = 0;
+
+            @Override
+            public void visit(ReturnStatement statement) {
+                count++;
+            }
+        };
+        body.accept(returns);
+        List<Statement> statements = body.getStatements();
+        return returns.count == 0
+                || returns.count == 1 && statements.get(statements.size() - 1) instanceof ReturnStatement;
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        super.visit(expression);
+        UserFunctionDef callee = candidates.get(expression.getName());
+        // calls with a wrong number of arguments are left for the interpreter to report
+        if (callee == null || callee.getParameters().size() != expression.getArguments().size()) {
+            return;
+        }
+        List<Expression> arguments = ((FunctionCallExpression) result).getArguments();
+        InlinedCallExpression body = inlinedBody(callee);
+        result = new InlinedCallExpression(callee.getName(), body.getParameters(), arguments,
+                body.getStatements(), body.getResult(), expression.getPosition());
+    }
+
+    /**
+     * Renamed and already optimized body of a function, shared by all its call sites, since the tree is immutable.
+     */
+    private InlinedCallExpression inlinedBody(UserFunctionDef callee) {
+        InlinedCallExpression body = inlinedBodies.get(callee.getName());
+        if (body != null) {
+            return body;
+        }
+        var renamer = new Renamer(callee.getName() + "#");
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : callee.getParameters()) {
+            parameters.add(renamer.prefix + parameter);
+        }
+        List<Statement> statements = new ArrayList<>();
+        Expression returned = null;
+        for (var statement : callee.getBody().getStatements()) {
+            if (statement instanceof ReturnStatement) {
+                returned = rewrite(renamer.rewrite(((ReturnStatement) statement).getExpression()));
+            } else {
+                statements.add(rewrite(renamer.rewrite(statement)));
+            }
+        }
+        body = new InlinedCallExpression(callee.getName(), parameters, List.of(), statements, returned, callee.getPosition());
+        inlinedBodies.put(callee.getName(), body);
+        return body;
+    }
+
+    private static class Renamer extends TreeRewriter {
+        private final String prefix;
+
+        Renamer(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void visit(IdentifierExpression expression) {
+            result = new IdentifierExpression(prefix + expression.getName(), expression.getPosition());
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            super.visit(expression);
+            var rewritten = (InlinedCallExpression) result;
+            List<String> parameters = new ArrayList<>();
+            for (String parameter : expression.getParameters()) {
+                parameters.add(prefix + parameter);
+            }
+            result = new InlinedCallExpression(rewritten.getName(), parameters, rewritten.getArguments(),
+                    rewritten.getStatements(), rewritten.getResult(), rewritten.getPosition());
+        }
+    }
+
+    /**
+     * Size of a tree as the number of statements and operations. Literals and variables are free.
+     */
+    private static class NodeCounter extends TreeWalker {
+        private int count = 0;
+
+        static int count(Block block) {
+            var counter = new NodeCounter();
+            block.accept(counter);
+            return counter.count;
+        }
+
+        @Override
+        public void visit(ExpressionStatement statement) {
+            count++;
+            super.visit(statement);
+        }
+
+        @Override
+        public void visit(IfStatement statement) {
+            count++;
+            super.visit(statement);
+        }
+
+        @Override
+        public void visit(WhileStatement statement) {
+            count++;
+            super.visit(statement);
+        }
+
+        @Override
+        public void visit(ReturnStatement statement) {
+            count++;
+            super.visit(statement);
+        }
+
+        @Override
+        public void visit(OrExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AndExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(ComparativeExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AdditiveExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(MultiplicativeExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(NegationExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(MemberExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(FunctionCallExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            count++;
+            super.visit(expression);
+        }
+    }
+}
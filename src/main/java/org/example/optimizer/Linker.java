@@ -0,0 +1,88 @@
+package org.example.optimizer;
+
+import org.example.program.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves names once, after all other passes, so that the interpreter does not look them up while running.
+ * Every call of a function is bound to the function it calls and every member of a Date or Period to its field
+ * or method. Only what SemanticChecker found valid is resolved: the called function exists, a user function
+ * gets as many arguments as it has parameters and the member is known.
+ */
+public class Linker extends TreeRewriter {
+    private final Map<String, FunctionDef> functions;
+    private final Set<String> memoizedFunctions;
+    private final List<BoundCallExpression> calls = new ArrayList<>();
+
+    public Linker(Map<String, FunctionDef> functions, Set<String> memoizedFunctions) {
+        this.functions = functions;
+        this.memoizedFunctions = memoizedFunctions;
+    }
+
+    /**
+     * @param memoizedFunctions functions whose results are cached by the interpreter
+     */
+    public static Program link(Program program, Map<String, FunctionDef> builtins, Set<String> memoizedFunctions) {
+        Map<String, FunctionDef> functions = new HashMap<>(builtins);
+        functions.putAll(program.getFunctions());
+        var linker = new Linker(functions, memoizedFunctions);
+        Program linked = linker.rewrite(program);
+        // user functions are final only now, after the calls in their bodies were bound
+        for (var call : linker.calls) {
+            FunctionDef function = linked.getFunctions().get(call.getTarget().getName());
+            if (function != null) {
+                call.setTarget(function);
+            }
+        }
+        return linked;
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        super.visit(expression);
+        var call = (FunctionCallExpression) result;
+        FunctionDef function = functions.get(expression.getName());
+        if (function == null || function instanceof UserFunctionDef
+                && ((UserFunctionDef) function).getParameters().size() != call.getArguments().size()) {
+            return;
+        }
+        var bound = new BoundCallExpression(call, function, memoizedFunctions.contains(expression.getName()));
+        calls.add(bound);
+        result = bound;
+    }
+
+    /**
+     * The fused accumulation is made before linking, so its operand and the assignment it replaces are linked here.
+     * The other superinstructions hold only variables and int constants.
+     */
+    @Override
+    public void visit(AccumulateLocalExpression expression) {
+        var original = (AssignmentExpression) rewrite(expression.getOriginal());
+        Expression operand = rewrite(expression.getOperand());
+        result = original == expression.getOriginal() && operand == expression.getOperand() ? expression
+                : new AccumulateLocalExpression(original, expression.getName(), expression.getOperator(),
+                        expression.getSpecializedOperator(), operand);
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        Expression object = rewrite(expression.getObject());
+        Expression member = expression.getMember();
+        Member resolved;
+        List<Expression> arguments = List.of();
+        if (member instanceof FunctionCallExpression) {
+            var method = (FunctionCallExpression) member;
+            resolved = Member.of(method.getName(), true);
+            arguments = rewriteExpressions(method.getArguments());
+        } else {
+            resolved = Member.of(((IdentifierExpression) member).getName(), false);
+        }
+        result = resolved == null ? expression
+                : new MemberAccessExpression(object, resolved, arguments, expression.getPosition(), member.getPosition());
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.optimizer;
+
+import org.example.analysis.TreeWalker;
+import org.example.program.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Loop-invariant code motion for while loops.
+ * An expression inside a loop is invariant if it has no side effects and none of the variables it reads is assigned
+ * in the loop. Such expressions are replaced with {@link CachedExpression}s and the loop is wrapped in a
+ * {@link TemporaryScopeStatement}, so each of them is computed at most once per loop entry.
+ * The value is computed where the expression originally was, when it is first needed, so an expression that
+ * fails is reported at its own position and only if the loop would have evaluated it.
+ */
+public class LoopInvariantHoister extends TreeRewriter {
+    private final Set<String> pureFunctions;
+    private int nextSlot;
+
+    /**
+     * @param pureFunctions user functions that may be called from a hoisted expression, see PurityAnalyzer
+     */
+    public LoopInvariantHoister(Set<String> pureFunctions) {
+        this.pureFunctions = pureFunctions;
+    }
+
+    public static Program optimize(Program program, Set<String> pureFunctions) {
+        return new LoopInvariantHoister(pureFunctions).rewrite(program);
+    }
+
+    @Override
+    public void visit(UserFunctionDef functionDef) {
+        nextSlot = Temporaries.firstFreeSlot(functionDef);
+        super.visit(functionDef);
+    }
+
+    @Override
+    public void visit(WhileStatement statement) {
+        int firstSlot = nextSlot;
+        var replacer = new InvariantReplacer(LoopWrites.of(statement));
+        Expression condition = replacer.rewrite(statement.getCondition());
+        Block loopBlock = replacer.rewrite(statement.getLoopBlock());
+        var loop = condition == statement.getCondition() && loopBlock == statement.getLoopBlock()
+                ? statement
+                : new WhileStatement(condition, loopBlock, statement.getPosition());
+        int slotCount = nextSlot - firstSlot;
+
+        // nested loops get their own scopes for the expressions that are invariant only in them
+        super.visit(loop);
+        if (slotCount > 0) {
+            result = new TemporaryScopeStatement((Statement) result, firstSlot, slotCount);
+        }
+    }
+
+    private static class LoopWrites extends TreeWalker {
+        private final Set<String> variables = new HashSet<>();
+        // Date and Period values may be shared between variables, so modifying a member of one
+        // could change what any other variable reads
+        private boolean memberAssigned;
+
+        static LoopWrites of(WhileStatement statement) {
+            var writes = new LoopWrites();
+            statement.accept(writes);
+            return writes;
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            if (expression.getLeft() instanceof IdentifierExpression) {
+                variables.add(((IdentifierExpression) expression.getLeft()).getName());
+            } else {
+                memberAssigned = true;
+            }
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            // parameters are bound again on every evaluation of the inlined call
+            variables.addAll(expression.getParameters());
+            super.visit(expression);
+        }
+    }
+
+    private class InvarianceChecker extends TreeWalker {
+        private final LoopWrites writes;
+        private boolean invariant = true;
+
+        InvarianceChecker(LoopWrites writes) {
+            this.writes = writes;
+        }
+
+        @Override
+        public void visit(IdentifierExpression expression) {
+            if (writes.memberAssigned || writes.variables.contains(expression.getName())) {
+                invariant = false;
+            }
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            invariant = false;
+        }
+
+        @Override
+        public void visit(FunctionCallExpression expression) {
+            if (!pureFunctions.contains(expression.getName())) {
+                invariant = false;
+            }
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(MemberExpression expression) {
+            // Date and Period members never have side effects and their names are not variables
+            expression.getObject().accept(this);
+            if (expression.getMember() instanceof FunctionCallExpression) {
+                for (var argument : ((FunctionCallExpression) expression.getMember()).getArguments()) {
+                    argument.accept(this);
+                }
+            }
+        }
+
+        @Override
+        public void visit(CachedExpression expression) {
+        }
+    }
+
+    private class InvariantReplacer extends TreeRewriter {
+        private final LoopWrites writes;
+
+        InvariantReplacer(LoopWrites writes) {
+            this.writes = writes;
+        }
+
+        @Override
+        protected Expression rewrite(Expression expression) {
+            if (expression != null && Temporaries.isWorthCaching(expression)) {
+                var checker = new InvarianceChecker(writes);
+                expression.accept(checker);
+                if (checker.invariant) {
+                    return new CachedExpression(expression, nextSlot++);
+                }
+            }
+            return super.rewrite(expression);
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            // the target of an assignment has to stay a reference
+            Expression right = rewrite(expression.getRight());
+            result = right == expression.getRight() ? expression
+                    : new AssignmentExpression(expression.getLeft(), right, expression.getPosition());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.optimizer;
+
+import org.example.analysis.ValueType;
+import org.example.program.*;
+
+import java.util.Map;
+
+/**
+ * Specializes a while loop that is already running for the types its variables hold at the moment,
+ * which lets the interpreter switch to it in the middle of a long loop, see InterpreterConfig.osrThreshold.
+ * Types proven from the loop's entry types hold for all later iterations, just like the types that
+ * TypeSpecializer proves for the whole function, so the specialized loop needs no checks to fall back.
+ */
+public class LoopSpecializer {
+
+    /**
+     * @param variableTypes types of the values of all variables visible in the loop
+     */
+    public static WhileStatement specialize(WhileStatement loop, Map<String, ValueType> variableTypes,
+                                            boolean replaceScalars, boolean fuseSuperinstructions) {
+        Statement specialized = TypeSpecializer.specialize(loop, variableTypes);
+        if (replaceScalars) {
+            specialized = new ScalarReplacer().rewrite(specialized);
+        }
+        if (fuseSuperinstructions) {
+            specialized = new SuperinstructionFuser().rewrite(specialized);
+        }
+        return (WhileStatement) specialized;
+    }
+}
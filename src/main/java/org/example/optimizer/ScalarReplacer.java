@@ -0,0 +1,64 @@
+package org.example.optimizer;
+
+import org.example.program.*;
+
+/**
+ * Replaces chains of two or more specialized Date and Period additions and subtractions with a
+ * {@link TemporalChainExpression}, whose intermediate values the interpreter keeps in primitive registers
+ * instead of allocating a Date or Period for each of them. Only the value of the whole chain is allocated,
+ * when it escapes into a variable, an argument or any other expression.
+ * Chains are found among the operations whose operand types were proven by TypeSpecializer.
+ */
+public class ScalarReplacer extends TreeRewriter {
+
+    public static Program optimize(Program program) {
+        return new ScalarReplacer().rewrite(program);
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        if (!isChain(expression)) {
+            super.visit(expression);
+            return;
+        }
+        result = new TemporalChainExpression(rewriteChain(expression));
+    }
+
+    private static boolean isChain(SpecializedBinaryExpression expression) {
+        if (TemporalChainExpression.isDateOperation(expression)) {
+            return TemporalChainExpression.isDateOperation(expression.getLeftExpression())
+                    || TemporalChainExpression.isPeriodOperation(expression.getRightExpression());
+        }
+        if (TemporalChainExpression.isPeriodOperation(expression)
+                && expression.getOperator() != SpecializedOperator.DATE_SUBTRACT_DATE) {
+            return TemporalChainExpression.isPeriodOperation(expression.getLeftExpression())
+                    || TemporalChainExpression.isPeriodOperation(expression.getRightExpression());
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites the operands that do not belong to the chain, the operations of the chain are kept.
+     */
+    private SpecializedBinaryExpression rewriteChain(SpecializedBinaryExpression expression) {
+        Expression left = expression.getLeftExpression();
+        Expression right = expression.getRightExpression();
+        if (expression.getOperator() == SpecializedOperator.DATE_SUBTRACT_DATE) {
+            left = rewrite(left);
+            right = rewrite(right);
+        } else if (TemporalChainExpression.isDateOperation(expression)) {
+            left = TemporalChainExpression.isDateOperation(left) ? rewriteChain((SpecializedBinaryExpression) left) : rewrite(left);
+            right = rewriteOperand(right);
+        } else {
+            left = rewriteOperand(left);
+            right = rewriteOperand(right);
+        }
+        return left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new SpecializedBinaryExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    private Expression rewriteOperand(Expression operand) {
+        return TemporalChainExpression.isPeriodOperation(operand)
+                ? rewriteChain((SpecializedBinaryExpression) operand) : rewrite(operand);
+    }
+}
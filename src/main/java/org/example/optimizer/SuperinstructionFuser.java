@@ -0,0 +1,122 @@
+package org.example.optimizer;
+
+import org.example.analysis.TreeWalker;
+import org.example.program.*;
+
+import java.util.Map;
+
+/**
+ * Replaces the most frequent loop idioms with superinstructions, which the interpreter executes as one operation:
+ * comparisons of a variable with a variable or an int constant ({@code i < n}), increments of a variable
+ * by an int constant ({@code i = i + 1}) and accumulations into a variable ({@code acc = acc + x}).
+ * Each superinstruction keeps the expression it replaces, which handles all values the fast path does not.
+ * It has to be the last pass, since other passes do not look inside superinstructions.
+ */
+public class SuperinstructionFuser extends TreeRewriter {
+    private static final Map<SpecializedOperator, ComparisonOperator> SPECIALIZED_COMPARISONS = Map.ofEntries(
+            Map.entry(SpecializedOperator.INT_EQUALS, ComparisonOperator.EQUALS),
+            Map.entry(SpecializedOperator.INT_NOT_EQUAL, ComparisonOperator.NOT_EQUAL),
+            Map.entry(SpecializedOperator.INT_LESS_THAN, ComparisonOperator.LESS_THAN),
+            Map.entry(SpecializedOperator.INT_MORE_THAN, ComparisonOperator.MORE_THAN),
+            Map.entry(SpecializedOperator.INT_LESS_OR_EQUAL_THAN, ComparisonOperator.LESS_OR_EQUAL_THAN),
+            Map.entry(SpecializedOperator.INT_MORE_OR_EQUAL_THAN, ComparisonOperator.MORE_OR_EQUAL_THAN));
+    private static final Map<SpecializedOperator, AdditiveOperator> SPECIALIZED_ADDITIONS = Map.of(
+            SpecializedOperator.INT_ADD, AdditiveOperator.PLUS,
+            SpecializedOperator.INT_SUBTRACT, AdditiveOperator.MINUS,
+            SpecializedOperator.DOUBLE_ADD, AdditiveOperator.PLUS,
+            SpecializedOperator.DOUBLE_SUBTRACT, AdditiveOperator.MINUS,
+            SpecializedOperator.DATE_ADD_PERIOD, AdditiveOperator.PLUS,
+            SpecializedOperator.DATE_SUBTRACT_PERIOD, AdditiveOperator.MINUS,
+            SpecializedOperator.PERIOD_ADD, AdditiveOperator.PLUS,
+            SpecializedOperator.PERIOD_SUBTRACT, AdditiveOperator.MINUS);
+
+    public static Program optimize(Program program) {
+        return new SuperinstructionFuser().rewrite(program);
+    }
+
+    @Override
+    public void visit(ComparativeExpression expression) {
+        super.visit(expression);
+        fuseComparison((Expression) result, expression.getOperator(),
+                expression.getLeftExpression(), expression.getRightExpression());
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        super.visit(expression);
+        ComparisonOperator operator = SPECIALIZED_COMPARISONS.get(expression.getOperator());
+        if (operator != null) {
+            fuseComparison((Expression) result, operator, expression.getLeftExpression(), expression.getRightExpression());
+        }
+    }
+
+    private void fuseComparison(Expression original, ComparisonOperator operator, Expression left, Expression right) {
+        if (!(left instanceof IdentifierExpression)) {
+            return;
+        }
+        String leftName = ((IdentifierExpression) left).getName();
+        if (right instanceof IdentifierExpression) {
+            result = new LocalComparisonExpression(original, operator, leftName, ((IdentifierExpression) right).getName(), 0);
+        } else if (right instanceof IntLiteralExpression) {
+            result = new LocalComparisonExpression(original, operator, leftName, null, ((IntLiteralExpression) right).getValue());
+        }
+    }
+
+    @Override
+    public void visit(AssignmentExpression expression) {
+        super.visit(expression);
+        if (!(expression.getLeft() instanceof IdentifierExpression)) {
+            return;
+        }
+        var original = (AssignmentExpression) result;
+        String name = ((IdentifierExpression) expression.getLeft()).getName();
+        Expression right = original.getRight();
+        AdditiveOperator operator = null;
+        SpecializedOperator specializedOperator = null;
+        Expression left = null;
+        Expression operand = null;
+        if (right instanceof AdditiveExpression) {
+            var additive = (AdditiveExpression) right;
+            operator = additive.getOperator();
+            left = additive.getLeftExpression();
+            operand = additive.getRightExpression();
+        } else if (right instanceof SpecializedBinaryExpression
+                && SPECIALIZED_ADDITIONS.containsKey(((SpecializedBinaryExpression) right).getOperator())) {
+            var specialized = (SpecializedBinaryExpression) right;
+            specializedOperator = specialized.getOperator();
+            operator = SPECIALIZED_ADDITIONS.get(specializedOperator);
+            left = specialized.getLeftExpression();
+            operand = specialized.getRightExpression();
+        }
+        if (!(left instanceof IdentifierExpression) || !((IdentifierExpression) left).getName().equals(name)) {
+            return;
+        }
+        if (operand instanceof IntLiteralExpression) {
+            int value = ((IntLiteralExpression) operand).getValue();
+            result = new IncrementLocalExpression(original, name, operator == AdditiveOperator.PLUS ? value : -value);
+        } else if (!assignsAnything(operand)) {
+            result = new AccumulateLocalExpression(original, name, operator, specializedOperator, operand);
+        }
+    }
+
+    private static boolean assignsAnything(Expression expression) {
+        var assignments = new TreeWalker() {
+            boolean found = false;
+
+            @Override
+            public void visit(AssignmentExpression expression) {
+                found = true;
+            }
+        };
+        expression.accept(assignments);
+        return assignments.found;
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        // method arguments are evaluated while the member's object is being accessed, they are left as they are
+        Expression object = rewrite(expression.getObject());
+        result = object == expression.getObject() ? expression
+                : new MemberExpression(object, expression.getMember(), expression.getPosition());
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.optimizer;
+
+import org.example.analysis.TreeWalker;
+import org.example.program.*;
+
+/**
+ * Temporary slots are numbered per function. Every pass that adds {@link CachedExpression}s
+ * continues numbering after the slots used by earlier passes.
+ */
+class Temporaries {
+    private Temporaries() {
+    }
+
+    static int firstFreeSlot(UserFunctionDef functionDef) {
+        var walker = new TreeWalker() {
+            int firstFree = 0;
+
+            @Override
+            public void visit(CachedExpression expression) {
+                firstFree = Math.max(firstFree, expression.getSlot() + 1);
+                super.visit(expression);
+            }
+
+            @Override
+            public void visit(TemporaryScopeStatement statement) {
+                firstFree = Math.max(firstFree, statement.getFirstSlot() + statement.getSlotCount());
+                super.visit(statement);
+            }
+        };
+        functionDef.accept(walker);
+        return walker.firstFree;
+    }
+
+    /**
+     * Variables, literals and fields of variables are cheaper to evaluate than to cache.
+     */
+    static boolean isWorthCaching(Expression expression) {
+        if (expression instanceof MemberExpression) {
+            var member = (MemberExpression) expression;
+            return !(member.getObject() instanceof IdentifierExpression && member.getMember() instanceof IdentifierExpression);
+        }
+        return !(expression instanceof IdentifierExpression
+                || expression instanceof CachedExpression
+                || expression instanceof IntLiteralExpression
+                || expression instanceof DoubleLiteralExpression
+                || expression instanceof StringLiteralExpression
+                || expression instanceof DateLiteralExpression
+                || expression instanceof PeriodLiteralExpression);
+    }
+}
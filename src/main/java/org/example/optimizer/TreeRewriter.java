@@ -0,0 +1,366 @@
+package org.example.optimizer;
+
+import org.example.program.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Visitor that builds a rewritten copy of a program tree. Every visit stores the rewritten node in {@code result}.
+ * Nodes whose children did not change are returned as they are, so an untouched tree is not copied at all
+ * and the original program is never modified.
+ * Optimization passes extend it and override only the nodes they rewrite.
+ */
+public abstract class TreeRewriter implements ProgramVisitor {
+    protected Object result;
+
+    public Program rewrite(Program program) {
+        program.accept(this);
+        return (Program) result;
+    }
+
+    protected Expression rewrite(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        expression.accept(this);
+        return (Expression) result;
+    }
+
+    protected Statement rewrite(Statement statement) {
+        statement.accept(this);
+        return (Statement) result;
+    }
+
+    protected Block rewrite(Block block) {
+        if (block == null) {
+            return null;
+        }
+        block.accept(this);
+        return (Block) result;
+    }
+
+    protected List<Expression> rewriteExpressions(List<Expression> expressions) {
+        List<Expression> rewritten = new ArrayList<>(expressions.size());
+        boolean changed = false;
+        for (var expression : expressions) {
+            Expression newExpression = rewrite(expression);
+            changed |= newExpression != expression;
+            rewritten.add(newExpression);
+        }
+        return changed ? rewritten : expressions;
+    }
+
+    @Override
+    public void visit(Program program) {
+        Map<String, FunctionDef> functions = new HashMap<>();
+        boolean changed = false;
+        for (var function : program.getFunctions().values()) {
+            function.accept(this);
+            changed |= result != function;
+            functions.put(function.getName(), (FunctionDef) result);
+        }
+        result = changed ? new Program(functions) : program;
+    }
+
+    @Override
+    public void visit(UserFunctionDef functionDef) {
+        Block body = rewrite(functionDef.getBody());
+        result = body == functionDef.getBody() ? functionDef
+                : new UserFunctionDef(functionDef.getName(), functionDef.getParameters(), body, functionDef.getPosition());
+    }
+
+    @Override
+    public void visit(Block block) {
+        List<Statement> statements = new ArrayList<>(block.getStatements().size());
+        boolean changed = false;
+        for (var statement : block.getStatements()) {
+            Statement newStatement = rewrite(statement);
+            changed |= newStatement != statement;
+            statements.add(newStatement);
+        }
+        result = changed ? new Block(statements, block.getPosition()) : block;
+    }
+
+    @Override
+    public void visit(ExpressionStatement statement) {
+        Expression expression = rewrite(statement.getExpression());
+        result = expression == statement.getExpression() ? statement
+                : new ExpressionStatement(expression, statement.getPosition());
+    }
+
+    @Override
+    public void visit(IfStatement statement) {
+        Expression condition = rewrite(statement.getCondition());
+        Block ifBlock = rewrite(statement.getIfBlock());
+        Block elseBlock = rewrite(statement.getElseBlock());
+        result = condition == statement.getCondition() && ifBlock == statement.getIfBlock() && elseBlock == statement.getElseBlock()
+                ? statement
+                : new IfStatement(condition, ifBlock, elseBlock, statement.getPosition());
+    }
+
+    @Override
+    public void visit(WhileStatement statement) {
+        Expression condition = rewrite(statement.getCondition());
+        Block loopBlock = rewrite(statement.getLoopBlock());
+        result = condition == statement.getCondition() && loopBlock == statement.getLoopBlock()
+                ? statement
+                : new WhileStatement(condition, loopBlock, statement.getPosition());
+    }
+
+    @Override
+    public void visit(ReturnStatement statement) {
+        Expression expression = rewrite(statement.getExpression());
+        result = expression == statement.getExpression() ? statement
+                : new ReturnStatement(expression, statement.getPosition());
+    }
+
+    @Override
+    public void visit(OrExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewrite(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new OrExpression(left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(AndExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewrite(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new AndExpression(left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(ComparativeExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewrite(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new ComparativeExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(AdditiveExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewrite(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new AdditiveExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(MultiplicativeExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewrite(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new MultiplicativeExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(NegationExpression expression) {
+        Expression operand = rewrite(expression.getExpression());
+        result = operand == expression.getExpression() ? expression
+                : new NegationExpression(expression.getOperator(), operand, expression.getPosition());
+    }
+
+    @Override
+    public void visit(AssignmentExpression expression) {
+        Expression left = rewrite(expression.getLeft());
+        Expression right = rewrite(expression.getRight());
+        result = left == expression.getLeft() && right == expression.getRight() ? expression
+                : new AssignmentExpression(left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        Expression object = rewrite(expression.getObject());
+        Expression member = expression.getMember();
+        // the member itself names a field or a method, only arguments of a method can be rewritten
+        if (member instanceof FunctionCallExpression) {
+            var method = (FunctionCallExpression) member;
+            List<Expression> arguments = rewriteExpressions(method.getArguments());
+            if (arguments != method.getArguments()) {
+                member = new FunctionCallExpression(method.getName(), arguments, method.getPosition());
+            }
+        }
+        result = object == expression.getObject() && member == expression.getMember() ? expression
+                : new MemberExpression(object, member, expression.getPosition());
+    }
+
+    @Override
+    public void visit(IntLiteralExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(DoubleLiteralExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(StringLiteralExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(DateLiteralExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(PeriodLiteralExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(IdentifierExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        List<Expression> arguments = rewriteExpressions(expression.getArguments());
+        result = arguments == expression.getArguments() ? expression
+                : new FunctionCallExpression(expression.getName(), arguments, expression.getPosition());
+    }
+
+    @Override
+    public void visit(CachedExpression expression) {
+        Expression inner = rewrite(expression.getExpression());
+        result = inner == expression.getExpression() ? expression
+                : new CachedExpression(inner, expression.getSlot());
+    }
+
+    @Override
+    public void visit(TemporaryScopeStatement statement) {
+        Statement inner = rewrite(statement.getStatement());
+        result = inner == statement.getStatement() ? statement
+                : new TemporaryScopeStatement(inner, statement.getFirstSlot(), statement.getSlotCount());
+    }
+
+    @Override
+    public void visit(InlinedCallExpression expression) {
+        List<Expression> arguments = rewriteExpressions(expression.getArguments());
+        List<Statement> statements = new ArrayList<>(expression.getStatements().size());
+        boolean changed = arguments != expression.getArguments();
+        for (var statement : expression.getStatements()) {
+            Statement newStatement = rewrite(statement);
+            changed |= newStatement != statement;
+            statements.add(newStatement);
+        }
+        Expression inlinedResult = rewrite(expression.getResult());
+        changed |= inlinedResult != expression.getResult();
+        result = !changed ? expression
+                : new InlinedCallExpression(expression.getName(), expression.getParameters(), arguments, statements,
+                        inlinedResult, expression.getPosition());
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewrite(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new SpecializedBinaryExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    // superinstructions are made by the last pass, nothing inside them is rewritten
+    @Override
+    public void visit(LocalComparisonExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(IncrementLocalExpression expression) {
+        result = expression;
+    }
+
+    @Override
+    public void visit(AccumulateLocalExpression expression) {
+        result = expression;
+    }
+
+    // a call stays bound to its target as long as it stays a call
+    @Override
+    public void visit(BoundCallExpression expression) {
+        Expression original = rewrite(expression.getOriginal());
+        if (original == expression.getOriginal()) {
+            result = expression;
+        } else {
+            result = original instanceof FunctionCallExpression
+                    ? new BoundCallExpression((FunctionCallExpression) original, expression.getTarget(), expression.isMemoized())
+                    : original;
+        }
+    }
+
+    @Override
+    public void visit(MemberAccessExpression expression) {
+        Expression object = rewrite(expression.getObject());
+        List<Expression> arguments = rewriteExpressions(expression.getArguments());
+        result = object == expression.getObject() && arguments == expression.getArguments() ? expression
+                : new MemberAccessExpression(object, expression.getMember(), arguments, expression.getPosition(),
+                        expression.getMemberPosition());
+    }
+
+    // a chain stays a chain as long as the rewritten operations are specialized
+    @Override
+    public void visit(TemporalChainExpression expression) {
+        Expression original = rewrite(expression.getOriginal());
+        if (original == expression.getOriginal()) {
+            result = expression;
+        } else {
+            result = original instanceof SpecializedBinaryExpression
+                    ? new TemporalChainExpression((SpecializedBinaryExpression) original) : original;
+        }
+    }
+
+    @Override
+    public void visit(ReadStringFunctionDef readStringFunctionDef) {
+        result = readStringFunctionDef;
+    }
+
+    @Override
+    public void visit(PrintFunctionDef printFunctionDef) {
+        result = printFunctionDef;
+    }
+
+    @Override
+    public void visit(ReadIntFunctionDef readIntFunctionDef) {
+        result = readIntFunctionDef;
+    }
+
+    @Override
+    public void visit(ReadDoubleFunctionDef readDoubleFunctionDef) {
+        result = readDoubleFunctionDef;
+    }
+
+    @Override
+    public void visit(ReadDateFunctionDef readDateFunctionDef) {
+        result = readDateFunctionDef;
+    }
+
+    @Override
+    public void visit(ReadPeriodFunctionDef readPeriodFunctionDef) {
+        result = readPeriodFunctionDef;
+    }
+
+    @Override
+    public void visit(DateVectorFunctionDef dateVectorFunctionDef) {
+        result = dateVectorFunctionDef;
+    }
+
+    @Override
+    public void visit(SizeFunctionDef sizeFunctionDef) {
+        result = sizeFunctionDef;
+    }
+
+    @Override
+    public void visit(AtFunctionDef atFunctionDef) {
+        result = atFunctionDef;
+    }
+
+    @Override
+    public void visit(CountLessFunctionDef countLessFunctionDef) {
+        result = countLessFunctionDef;
+    }
+}
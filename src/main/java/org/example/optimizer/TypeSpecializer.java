@@ -0,0 +1,405 @@
+package org.example.optimizer;
+
+import org.example.analysis.ValueType;
+import org.example.program.*;
+
+import java.util.*;
+
+/**
+ * Flow-sensitive type inference over function bodies. Binary operations whose operand types are proven
+ * are replaced with {@link SpecializedBinaryExpression}s; all other operations keep the generic, checked path.
+ * <p>
+ * Variable types are tracked in scopes that mirror the block contexts of the interpreter. A variable has a known type
+ * only if every path reaching the use assigned it a value of that type, so a known type also means the value is not
+ * null. Branches are joined after if statements and loops are iterated until the types at their entry stop changing.
+ * Parameters, member values and results of user functions are UNKNOWN, unless entry types are given explicitly,
+ * as they are for a loop specialized while it runs, see {@link LoopSpecializer}.
+ */
+public class TypeSpecializer extends TreeRewriter {
+    private static final Map<String, ValueType> BUILTIN_RESULT_TYPES = Map.of(
+            "readString", ValueType.STRING,
+            "readInt", ValueType.INT,
+            "readDouble", ValueType.DOUBLE,
+            "readDate", ValueType.DATE,
+            "readPeriod", ValueType.PERIOD);
+
+    // innermost scope first, like the block contexts of a function call
+    private Deque<Map<String, ValueType>> scopes = new ArrayDeque<>();
+    private ValueType type;
+
+    public static Program optimize(Program program) {
+        return new TypeSpecializer().rewrite(program);
+    }
+
+    /**
+     * Specializes a single statement executed with variables of the given types visible in one block.
+     */
+    public static Statement specialize(Statement statement, Map<String, ValueType> variableTypes) {
+        var specializer = new TypeSpecializer();
+        specializer.scopes.push(new HashMap<>(variableTypes));
+        return specializer.rewrite(statement);
+    }
+
+    @Override
+    public void visit(UserFunctionDef functionDef) {
+        scopes = new ArrayDeque<>();
+        Map<String, ValueType> parameters = new HashMap<>();
+        for (String parameter : functionDef.getParameters()) {
+            parameters.put(parameter, ValueType.UNKNOWN);
+        }
+        scopes.push(parameters);
+        super.visit(functionDef);
+        scopes.pop();
+    }
+
+    @Override
+    public void visit(Block block) {
+        scopes.push(new HashMap<>());
+        super.visit(block);
+        scopes.pop();
+    }
+
+    @Override
+    public void visit(IfStatement statement) {
+        Expression condition = rewrite(statement.getCondition());
+        var entry = copyScopes();
+        Block ifBlock = rewrite(statement.getIfBlock());
+        var afterIf = scopes;
+        scopes = entry;
+        Block elseBlock = rewrite(statement.getElseBlock());
+        joinScopes(afterIf);
+        result = condition == statement.getCondition() && ifBlock == statement.getIfBlock() && elseBlock == statement.getElseBlock()
+                ? statement
+                : new IfStatement(condition, ifBlock, elseBlock, statement.getPosition());
+    }
+
+    @Override
+    public void visit(WhileStatement statement) {
+        // types at the start of an iteration are the types before the loop joined with the types after any iteration
+        var head = copyScopes();
+        while (true) {
+            scopes = copyScopes(head);
+            super.visit(statement);
+            joinScopes(head);
+            if (sameTypes(scopes, head)) {
+                break;
+            }
+            head = scopes;
+        }
+        // the last pass started from the fixed point, so its rewrite holds for every iteration;
+        // the loop is left after its condition, which is evaluated once more
+        var loop = result;
+        rewrite(statement.getCondition());
+        result = loop;
+    }
+
+    @Override
+    public void visit(OrExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewriteShortCircuited(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new OrExpression(left, right, expression.getPosition());
+        type = ValueType.BOOLEAN;
+    }
+
+    @Override
+    public void visit(AndExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        Expression right = rewriteShortCircuited(expression.getRightExpression());
+        result = left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new AndExpression(left, right, expression.getPosition());
+        type = ValueType.BOOLEAN;
+    }
+
+    /**
+     * The right operand of or and and may be skipped, so the types after it are joined with the types before it.
+     */
+    private Expression rewriteShortCircuited(Expression operand) {
+        var skipped = copyScopes();
+        Expression rewritten = rewrite(operand);
+        joinScopes(skipped);
+        return rewritten;
+    }
+
+    @Override
+    public void visit(ComparativeExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        ValueType leftType = type;
+        Expression right = rewrite(expression.getRightExpression());
+        ValueType rightType = type;
+        SpecializedOperator operator = null;
+        if (leftType == ValueType.INT && rightType == ValueType.INT) {
+            operator = SpecializedOperator.valueOf("INT_" + expression.getOperator().name());
+        } else if (leftType.isNumber() && rightType.isNumber()) {
+            operator = SpecializedOperator.valueOf("DOUBLE_" + expression.getOperator().name());
+        }
+        result = operator != null ? new SpecializedBinaryExpression(operator, left, right, expression.getPosition())
+                : left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new ComparativeExpression(expression.getOperator(), left, right, expression.getPosition());
+        // an incomparable pair stops the program, so the result is always a boolean
+        type = ValueType.BOOLEAN;
+    }
+
+    @Override
+    public void visit(AdditiveExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        ValueType leftType = type;
+        Expression right = rewrite(expression.getRightExpression());
+        ValueType rightType = type;
+        boolean plus = expression.getOperator() == AdditiveOperator.PLUS;
+        SpecializedOperator operator = null;
+        type = ValueType.UNKNOWN;
+        if (leftType == ValueType.INT && rightType == ValueType.INT) {
+            operator = plus ? SpecializedOperator.INT_ADD : SpecializedOperator.INT_SUBTRACT;
+            type = ValueType.INT;
+        } else if (leftType.isNumber() && rightType.isNumber()) {
+            operator = plus ? SpecializedOperator.DOUBLE_ADD : SpecializedOperator.DOUBLE_SUBTRACT;
+            type = ValueType.DOUBLE;
+        } else if (leftType == ValueType.DATE && rightType == ValueType.PERIOD) {
+            operator = plus ? SpecializedOperator.DATE_ADD_PERIOD : SpecializedOperator.DATE_SUBTRACT_PERIOD;
+            type = ValueType.DATE;
+        } else if (leftType == ValueType.PERIOD && rightType == ValueType.PERIOD) {
+            operator = plus ? SpecializedOperator.PERIOD_ADD : SpecializedOperator.PERIOD_SUBTRACT;
+            type = ValueType.PERIOD;
+        } else if (!plus && leftType == ValueType.DATE && rightType == ValueType.DATE) {
+            operator = SpecializedOperator.DATE_SUBTRACT_DATE;
+            type = ValueType.PERIOD;
+        }
+        result = operator != null ? new SpecializedBinaryExpression(operator, left, right, expression.getPosition())
+                : left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new AdditiveExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(MultiplicativeExpression expression) {
+        Expression left = rewrite(expression.getLeftExpression());
+        ValueType leftType = type;
+        Expression right = rewrite(expression.getRightExpression());
+        ValueType rightType = type;
+        boolean multiply = expression.getOperator() == MultiplicativeOperator.MULTIPLY;
+        SpecializedOperator operator = null;
+        type = ValueType.UNKNOWN;
+        if (leftType == ValueType.INT && rightType == ValueType.INT) {
+            operator = multiply ? SpecializedOperator.INT_MULTIPLY : SpecializedOperator.INT_DIVIDE;
+            type = ValueType.INT;
+        } else if (leftType.isNumber() && rightType.isNumber()) {
+            operator = multiply ? SpecializedOperator.DOUBLE_MULTIPLY : SpecializedOperator.DOUBLE_DIVIDE;
+            type = ValueType.DOUBLE;
+        } else if (leftType == ValueType.PERIOD && rightType == ValueType.INT
+                || leftType == ValueType.INT && rightType == ValueType.PERIOD) {
+            type = ValueType.PERIOD;
+        }
+        result = operator != null ? new SpecializedBinaryExpression(operator, left, right, expression.getPosition())
+                : left == expression.getLeftExpression() && right == expression.getRightExpression() ? expression
+                : new MultiplicativeExpression(expression.getOperator(), left, right, expression.getPosition());
+    }
+
+    @Override
+    public void visit(NegationExpression expression) {
+        super.visit(expression);
+        if (expression.getOperator() == NegationOperator.NOT) {
+            type = ValueType.BOOLEAN;
+        } else if (!type.isNumber()) {
+            type = ValueType.UNKNOWN;
+        }
+    }
+
+    @Override
+    public void visit(AssignmentExpression expression) {
+        // the target is not rewritten, it has to stay a reference
+        Expression right = rewrite(expression.getRight());
+        if (expression.getLeft() instanceof IdentifierExpression) {
+            assign(((IdentifierExpression) expression.getLeft()).getName(), type);
+        } else {
+            // only for the assignments the object may contain
+            rewrite(expression.getLeft());
+        }
+        result = right == expression.getRight() ? expression
+                : new AssignmentExpression(expression.getLeft(), right, expression.getPosition());
+        // a new variable leaves a null result
+        type = ValueType.UNKNOWN;
+    }
+
+    private void assign(String name, ValueType valueType) {
+        for (var scope : scopes) {
+            ValueType current = scope.get(name);
+            if (current != null && current != ValueType.UNKNOWN) {
+                // the variable surely holds a value, so the interpreter will overwrite it
+                scope.put(name, valueType);
+                return;
+            }
+            if (current != null) {
+                // the variable may hold null, in which case the interpreter declares a new one in the current block;
+                // the old one may or may not change, and UNKNOWN is right in both cases
+                break;
+            }
+        }
+        scopes.peek().put(name, valueType);
+    }
+
+    @Override
+    public void visit(MemberExpression expression) {
+        // arguments of methods are left generic, since they are evaluated while the member's object is being accessed
+        Expression object = rewrite(expression.getObject());
+        result = object == expression.getObject() ? expression
+                : new MemberExpression(object, expression.getMember(), expression.getPosition());
+        type = ValueType.UNKNOWN;
+    }
+
+    @Override
+    public void visit(MemberAccessExpression expression) {
+        super.visit(expression);
+        type = ValueType.UNKNOWN;
+    }
+
+    @Override
+    public void visit(IntLiteralExpression expression) {
+        super.visit(expression);
+        type = ValueType.INT;
+    }
+
+    @Override
+    public void visit(DoubleLiteralExpression expression) {
+        super.visit(expression);
+        type = ValueType.DOUBLE;
+    }
+
+    @Override
+    public void visit(StringLiteralExpression expression) {
+        super.visit(expression);
+        type = ValueType.STRING;
+    }
+
+    @Override
+    public void visit(DateLiteralExpression expression) {
+        super.visit(expression);
+        type = ValueType.DATE;
+    }
+
+    @Override
+    public void visit(PeriodLiteralExpression expression) {
+        super.visit(expression);
+        type = ValueType.PERIOD;
+    }
+
+    @Override
+    public void visit(IdentifierExpression expression) {
+        super.visit(expression);
+        type = ValueType.UNKNOWN;
+        for (var scope : scopes) {
+            ValueType variableType = scope.get(expression.getName());
+            if (variableType != null) {
+                type = variableType;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void visit(FunctionCallExpression expression) {
+        super.visit(expression);
+        type = BUILTIN_RESULT_TYPES.getOrDefault(expression.getName(), ValueType.UNKNOWN);
+    }
+
+    @Override
+    public void visit(InlinedCallExpression expression) {
+        List<Expression> arguments = new ArrayList<>();
+        Map<String, ValueType> parameters = new HashMap<>();
+        for (int i = 0; i < expression.getArguments().size(); i++) {
+            arguments.add(rewrite(expression.getArguments().get(i)));
+            parameters.put(expression.getParameters().get(i), type);
+        }
+        scopes.push(parameters);
+        List<Statement> statements = new ArrayList<>();
+        for (var statement : expression.getStatements()) {
+            statements.add(rewrite(statement));
+        }
+        Expression inlinedResult = rewrite(expression.getResult());
+        ValueType resultType = expression.getResult() == null ? ValueType.UNKNOWN : type;
+        scopes.pop();
+        result = new InlinedCallExpression(expression.getName(), expression.getParameters(), arguments, statements,
+                inlinedResult, expression.getPosition());
+        type = resultType;
+    }
+
+    @Override
+    public void visit(SpecializedBinaryExpression expression) {
+        super.visit(expression);
+        type = resultType(expression.getOperator());
+    }
+
+    private static ValueType resultType(SpecializedOperator operator) {
+        switch (operator) {
+            case INT_ADD:
+            case INT_SUBTRACT:
+            case INT_MULTIPLY:
+            case INT_DIVIDE:
+                return ValueType.INT;
+            case DOUBLE_ADD:
+            case DOUBLE_SUBTRACT:
+            case DOUBLE_MULTIPLY:
+            case DOUBLE_DIVIDE:
+                return ValueType.DOUBLE;
+            case DATE_ADD_PERIOD:
+            case DATE_SUBTRACT_PERIOD:
+                return ValueType.DATE;
+            case DATE_SUBTRACT_DATE:
+            case PERIOD_ADD:
+            case PERIOD_SUBTRACT:
+                return ValueType.PERIOD;
+            default:
+                return ValueType.BOOLEAN;
+        }
+    }
+
+    // when a running loop is specialized again, superinstructions are specialized as the expressions they replace,
+    // so that their assignments are seen; the loop is fused again afterwards
+    @Override
+    public void visit(LocalComparisonExpression expression) {
+        result = rewrite(expression.getOriginal());
+    }
+
+    @Override
+    public void visit(IncrementLocalExpression expression) {
+        result = rewrite(expression.getOriginal());
+    }
+
+    @Override
+    public void visit(AccumulateLocalExpression expression) {
+        result = rewrite(expression.getOriginal());
+    }
+
+    private Deque<Map<String, ValueType>> copyScopes() {
+        return copyScopes(scopes);
+    }
+
+    private static Deque<Map<String, ValueType>> copyScopes(Deque<Map<String, ValueType>> scopes) {
+        Deque<Map<String, ValueType>> copy = new ArrayDeque<>();
+        for (var scope : scopes) {
+            copy.addLast(new HashMap<>(scope));
+        }
+        return copy;
+    }
+
+    /**
+     * Joins the current scopes with scopes of another path through the same code.
+     * Both have the same blocks, only the variables declared in them may differ.
+     */
+    private void joinScopes(Deque<Map<String, ValueType>> other) {
+        Iterator<Map<String, ValueType>> otherScopes = other.iterator();
+        for (var scope : scopes) {
+            Map<String, ValueType> otherScope = otherScopes.next();
+            for (var entry : scope.entrySet()) {
+                ValueType otherType = otherScope.get(entry.getKey());
+                entry.setValue(otherType == null ? ValueType.UNKNOWN : entry.getValue().join(otherType));
+            }
+            for (var entry : otherScope.entrySet()) {
+                scope.putIfAbsent(entry.getKey(), ValueType.UNKNOWN);
+            }
+        }
+    }
+
+    private static boolean sameTypes(Deque<Map<String, ValueType>> first, Deque<Map<String, ValueType>> second) {
+        return new ArrayList<>(first).equals(new ArrayList<>(second));
+    }
+}
@@ -18,7 +18,7 @@ import java.util.*;
 
 public class Parser {
 
-    private static Lexer lexer;
+    private final Lexer lexer;
     private final ErrorManager errorManager;
     private final int unknownTokensInARowLimit;
     private final int maxParameters;
@@ -31,7 +31,7 @@ public class Parser {
 
 
     public Parser(Lexer lexer, ErrorManager errorManager) {
-        Parser.lexer = lexer;
+        this.lexer = lexer;
         this.errorManager = errorManager;
 
         Properties props = new Properties();
@@ -57,7 +57,7 @@ public class Parser {
 
     @SuppressWarnings("unused")
     public Parser(Lexer lexer, ErrorManager errorManager, String configPath) {
-        Parser.lexer = lexer;
+        this.lexer = lexer;
         this.errorManager = errorManager;
 
         Properties props = new Properties();
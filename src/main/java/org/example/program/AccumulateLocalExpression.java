@@ -0,0 +1,35 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+/**
+ * Assignment of the form {@code acc = acc + x} or {@code acc = acc - x}, which evaluates only the operand
+ * and updates the variable in place. The operand does not assign anything, so the variable cannot change
+ * while the operand is evaluated.
+ */
+@AllArgsConstructor
+public class AccumulateLocalExpression implements Expression {
+    @Getter
+    AssignmentExpression original;
+    @Getter
+    String name;
+    @Getter
+    AdditiveOperator operator;
+    // set if the types of both operands were proven, null otherwise
+    @Getter
+    SpecializedOperator specializedOperator;
+    @Getter
+    Expression operand;
+
+    @Override
+    public Position getPosition() {
+        return original.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.program;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.example.source.Position;
+
+/**
+ * Call of a function resolved once, before execution, so the interpreter calls its target without looking it up.
+ * The target is set by Linker after the functions it may call were made, it is never changed afterwards.
+ */
+public class BoundCallExpression implements Expression {
+    @Getter
+    FunctionCallExpression original;
+    @Getter @Setter
+    FunctionDef target;
+    // results are cached, see PurityAnalyzer
+    @Getter
+    boolean memoized;
+
+    public BoundCallExpression(FunctionCallExpression original, FunctionDef target, boolean memoized) {
+        this.original = original;
+        this.target = target;
+        this.memoized = memoized;
+    }
+
+    @Override
+    public Position getPosition() {
+        return original.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
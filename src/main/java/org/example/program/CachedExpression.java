@@ -0,0 +1,27 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+/**
+ * Expression whose value cannot change while the enclosing {@link TemporaryScopeStatement} executes.
+ * It is evaluated on first use and later uses read the value stored in the temporary slot of the function call.
+ */
+@AllArgsConstructor
+public class CachedExpression implements Expression {
+    @Getter
+    Expression expression;
+    @Getter
+    int slot;
+
+    @Override
+    public Position getPosition() {
+        return expression.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+/**
+ * Assignment of the form {@code i = i + 1} or {@code i = i - 1}, which adds the constant to an int variable in place.
+ * If the variable does not hold an int, the original assignment is evaluated instead.
+ */
+@AllArgsConstructor
+public class IncrementLocalExpression implements Expression {
+    @Getter
+    AssignmentExpression original;
+    @Getter
+    String name;
+    @Getter
+    int delta;
+
+    @Override
+    public Position getPosition() {
+        return original.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+import java.util.List;
+
+/**
+ * Call of a user function replaced with the function's body. The arguments are bound to the parameters in a new block
+ * of the calling function, then the statements are executed and the result expression (if any) gives the value.
+ * Parameters and local variables of the body are renamed, so they cannot clash with variables of the caller.
+ */
+@AllArgsConstructor
+public class InlinedCallExpression implements Expression {
+    @Getter
+    String name;
+    @Getter
+    List<String> parameters;
+    @Getter
+    List<Expression> arguments;
+    @Getter
+    List<Statement> statements;
+    @Getter
+    Expression result;
+    @Getter
+    Position position;
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
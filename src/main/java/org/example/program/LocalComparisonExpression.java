@@ -0,0 +1,34 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+/**
+ * Comparison of a variable with another variable or an int constant, evaluated as a single operation
+ * when both values are ints. Any other values are compared by the original expression.
+ */
+@AllArgsConstructor
+public class LocalComparisonExpression implements Expression {
+    @Getter
+    Expression original;
+    @Getter
+    ComparisonOperator operator;
+    @Getter
+    String leftName;
+    // null if the right operand is the constant
+    @Getter
+    String rightName;
+    @Getter
+    int constant;
+
+    @Override
+    public Position getPosition() {
+        return original.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
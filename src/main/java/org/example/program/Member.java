@@ -0,0 +1,46 @@
+package org.example.program;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fields and methods of Date and Period. Member names are resolved to these once, before execution.
+ */
+public enum Member {
+    YEAR("year", false),
+    MONTH("month", false),
+    DAY("day", false),
+    HOUR("hour", false),
+    MINUTE("minute", false),
+    SECOND("second", false),
+    GET_DIFFERENCE("getDifference", true),
+    CALCULATE_SECONDS_SINCE_NEW_ERA("calculateSecondsSinceNewEra", true);
+
+    private static final Map<String, Member> FIELDS = new HashMap<>();
+    private static final Map<String, Member> METHODS = new HashMap<>();
+
+    static {
+        for (Member member : values()) {
+            (member.method ? METHODS : FIELDS).put(member.name, member);
+        }
+    }
+
+    @Getter
+    private final String name;
+    @Getter
+    private final boolean method;
+
+    Member(String name, boolean method) {
+        this.name = name;
+        this.method = method;
+    }
+
+    /**
+     * @return the field or method of that name, or null if neither Date nor Period has it
+     */
+    public static Member of(String name, boolean method) {
+        return (method ? METHODS : FIELDS).get(name);
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+import java.util.List;
+
+/**
+ * Member expression whose field or method was resolved before execution. The interpreter accesses the member
+ * of the object's value directly, without looking up its name.
+ */
+@AllArgsConstructor
+public class MemberAccessExpression implements Expression {
+    @Getter
+    Expression object;
+    @Getter
+    Member member;
+    // evaluated before the method is called, empty for fields
+    @Getter
+    List<Expression> arguments;
+    @Getter
+    Position position;
+    // position of the member's name, where errors of the access are reported
+    @Getter
+    Position memberPosition;
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
@@ -3,18 +3,19 @@ package org.example.program;
 import lombok.Getter;
 import org.example.parser.Visitable;
 
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Parsed program. It is immutable once created, so a single instance can be executed by many threads at once.
+ */
 public class Program implements Visitable {
     @Getter
-    Hashtable<String, FunctionDef> functions;
+    final Map<String, FunctionDef> functions;
 
-    public Program(Hashtable<String, FunctionDef> functions){
-        this.functions = functions;
-    }
-
-    public FunctionDef addFunctionIfAbsent(String name, FunctionDef def){
-        return functions.putIfAbsent(name, def);
+    public Program(Map<String, FunctionDef> functions){
+        this.functions = Collections.unmodifiableMap(new HashMap<>(functions));
     }
 
     public void accept(ProgramVisitor visitor) {
@@ -23,10 +23,24 @@ public interface ProgramVisitor {
     void visit(PeriodLiteralExpression expression);
     void visit(IdentifierExpression expression);
     void visit(FunctionCallExpression expression);
+    void visit(CachedExpression expression);
+    void visit(TemporaryScopeStatement statement);
+    void visit(InlinedCallExpression expression);
+    void visit(SpecializedBinaryExpression expression);
+    void visit(LocalComparisonExpression expression);
+    void visit(IncrementLocalExpression expression);
+    void visit(AccumulateLocalExpression expression);
+    void visit(TemporalChainExpression expression);
+    void visit(BoundCallExpression expression);
+    void visit(MemberAccessExpression expression);
     void visit(ReadStringFunctionDef readStringFunctionDef);
     void visit(PrintFunctionDef printFunctionDef);
     void visit(ReadIntFunctionDef readIntFunctionDef);
     void visit(ReadDoubleFunctionDef readDoubleFunctionDef);
     void visit(ReadDateFunctionDef readDateFunctionDef);
     void visit(ReadPeriodFunctionDef readPeriodFunctionDef);
+    void visit(DateVectorFunctionDef dateVectorFunctionDef);
+    void visit(SizeFunctionDef sizeFunctionDef);
+    void visit(AtFunctionDef atFunctionDef);
+    void visit(CountLessFunctionDef countLessFunctionDef);
 }
@@ -0,0 +1,28 @@
+package org.example.program;
+
+import lombok.Getter;
+import org.example.source.Position;
+
+import java.util.List;
+
+public class SizeFunctionDef implements FunctionDef {
+    @Getter
+    String name = "size";
+    @Getter
+    Position position = new Position(0,0);
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+
+    @Override
+    public Block getBody() {
+        return null;
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return null;
+    }
+}
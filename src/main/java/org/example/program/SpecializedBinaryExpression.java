@@ -0,0 +1,26 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+/**
+ * Binary operation whose operand types were proven before execution, so the interpreter can apply
+ * the operation directly, without checking the operands.
+ */
+@AllArgsConstructor
+public class SpecializedBinaryExpression implements Expression {
+    @Getter
+    SpecializedOperator operator;
+    @Getter
+    Expression leftExpression;
+    @Getter
+    Expression rightExpression;
+    @Getter
+    Position position;
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.program;
+
+public enum SpecializedOperator {
+    INT_ADD,
+    INT_SUBTRACT,
+    INT_MULTIPLY,
+    INT_DIVIDE,
+    DOUBLE_ADD,
+    DOUBLE_SUBTRACT,
+    DOUBLE_MULTIPLY,
+    DOUBLE_DIVIDE,
+    DATE_ADD_PERIOD,
+    DATE_SUBTRACT_PERIOD,
+    DATE_SUBTRACT_DATE,
+    PERIOD_ADD,
+    PERIOD_SUBTRACT,
+    INT_EQUALS,
+    INT_NOT_EQUAL,
+    INT_LESS_THAN,
+    INT_MORE_THAN,
+    INT_LESS_OR_EQUAL_THAN,
+    INT_MORE_OR_EQUAL_THAN,
+    DOUBLE_EQUALS,
+    DOUBLE_NOT_EQUAL,
+    DOUBLE_LESS_THAN,
+    DOUBLE_MORE_THAN,
+    DOUBLE_LESS_OR_EQUAL_THAN,
+    DOUBLE_MORE_OR_EQUAL_THAN
+}
@@ -0,0 +1,46 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+import java.util.Set;
+
+/**
+ * Chain of specialized Date and Period additions and subtractions, such as {@code d + 1d + 2h - p},
+ * evaluated in primitive registers. The intermediate dates and periods of the chain are never allocated,
+ * only the value of the whole chain is.
+ * <p>
+ * The left operand of a date operation and every operand of a period operation belong to the chain
+ * if they are operations of the kind they evaluate to, the operands of a date difference never do.
+ */
+@AllArgsConstructor
+public class TemporalChainExpression implements Expression {
+    private static final Set<SpecializedOperator> DATE_OPERATORS =
+            Set.of(SpecializedOperator.DATE_ADD_PERIOD, SpecializedOperator.DATE_SUBTRACT_PERIOD);
+    private static final Set<SpecializedOperator> PERIOD_OPERATORS =
+            Set.of(SpecializedOperator.PERIOD_ADD, SpecializedOperator.PERIOD_SUBTRACT, SpecializedOperator.DATE_SUBTRACT_DATE);
+
+    @Getter
+    SpecializedBinaryExpression original;
+
+    public static boolean isDateOperation(Expression expression) {
+        return expression instanceof SpecializedBinaryExpression
+                && DATE_OPERATORS.contains(((SpecializedBinaryExpression) expression).getOperator());
+    }
+
+    public static boolean isPeriodOperation(Expression expression) {
+        return expression instanceof SpecializedBinaryExpression
+                && PERIOD_OPERATORS.contains(((SpecializedBinaryExpression) expression).getOperator());
+    }
+
+    @Override
+    public Position getPosition() {
+        return original.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
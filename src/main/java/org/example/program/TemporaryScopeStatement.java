@@ -0,0 +1,29 @@
+package org.example.program;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.source.Position;
+
+/**
+ * Clears temporary slots {@code firstSlot .. firstSlot + slotCount - 1} and executes the wrapped statement,
+ * so the {@link CachedExpression}s inside it are evaluated again every time the statement is entered.
+ */
+@AllArgsConstructor
+public class TemporaryScopeStatement implements Statement {
+    @Getter
+    Statement statement;
+    @Getter
+    int firstSlot;
+    @Getter
+    int slotCount;
+
+    @Override
+    public Position getPosition() {
+        return statement.getPosition();
+    }
+
+    @Override
+    public void accept(ProgramVisitor programVisitor) {
+        programVisitor.visit(this);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.types;
+
+import java.util.Arrays;
+
+/**
+ * Tables of the proleptic Gregorian calendar that dates are validated and counted with.
+ * Month lengths and the days before each month are fixed arrays, the first days of the years of a range
+ * are cached the first time they are asked for. Years outside the range are computed every time,
+ * with the same results.
+ * <p>
+ * The cache can be filled by several threads at once, each of them writes the same value into it.
+ */
+final class CalendarTables {
+    /**
+     * Caches the years from 1 BC to AD 3000.
+     */
+    static final CalendarTables DEFAULT = new CalendarTables(0, 3000);
+
+    /**
+     * Days from March 1st of year 0, where the 400-year cycles start, to AD 1.01.01.
+     */
+    static final long DAYS_FROM_MARCH_TO_NEW_ERA = 306;
+
+    private static final int[] DAYS_IN_MONTH = {0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final int[] DAYS_IN_MONTH_IN_LEAP_YEAR = {0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final int[] DAYS_BEFORE_MONTH = {0, 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private static final int[] DAYS_BEFORE_MONTH_IN_LEAP_YEAR = {0, 0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335};
+
+    private static final int NOT_CACHED = Integer.MIN_VALUE;
+
+    private final long firstYear;
+    // days from AD 1.01.01 to January 1st of each year of the range, NOT_CACHED until they are needed
+    private final int[] yearStarts;
+
+    /**
+     * @param firstYear first astronomical year of the cached range, 0 is 1 BC
+     * @param lastYear last astronomical year of the cached range
+     */
+    CalendarTables(long firstYear, long lastYear) {
+        if (lastYear < firstYear || lastYear - firstYear >= Integer.MAX_VALUE
+                || computeYearStart(firstYear) <= NOT_CACHED || computeYearStart(lastYear) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid range of cached years");
+        }
+        this.firstYear = firstYear;
+        this.yearStarts = new int[(int) (lastYear - firstYear + 1)];
+        Arrays.fill(yearStarts, NOT_CACHED);
+    }
+
+    static boolean isLeapYear(long astronomicalYear) {
+        if (astronomicalYear % 400 == 0) return true;
+        if (astronomicalYear % 100 == 0) return false;
+        return astronomicalYear % 4 == 0;
+    }
+
+    static int daysInMonth(long astronomicalYear, int month) {
+        return (isLeapYear(astronomicalYear) ? DAYS_IN_MONTH_IN_LEAP_YEAR : DAYS_IN_MONTH)[month];
+    }
+
+    /**
+     * Days from AD 1.01.01 to the given day of the proleptic Gregorian calendar, negative for earlier days.
+     */
+    long daysSinceNewEra(long astronomicalYear, int month, int day) {
+        int[] daysBeforeMonth = isLeapYear(astronomicalYear) ? DAYS_BEFORE_MONTH_IN_LEAP_YEAR : DAYS_BEFORE_MONTH;
+        return yearStart(astronomicalYear) + daysBeforeMonth[month] + day - 1;
+    }
+
+    /**
+     * Days from AD 1.01.01 to January 1st of the given year.
+     */
+    long yearStart(long astronomicalYear) {
+        long index = astronomicalYear - firstYear;
+        if (index < 0 || index >= yearStarts.length) {
+            return computeYearStart(astronomicalYear);
+        }
+        int yearStart = yearStarts[(int) index];
+        if (yearStart == NOT_CACHED) {
+            yearStart = (int) computeYearStart(astronomicalYear);
+            yearStarts[(int) index] = yearStart;
+        }
+        return yearStart;
+    }
+
+    private static long computeYearStart(long astronomicalYear) {
+        long yearsBefore = astronomicalYear - 1;
+        long leapYearsBefore = Math.floorDiv(yearsBefore, 4) - Math.floorDiv(yearsBefore, 100) + Math.floorDiv(yearsBefore, 400);
+        return 365 * yearsBefore + leapYearsBefore;
+    }
+}
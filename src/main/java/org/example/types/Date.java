@@ -2,90 +2,126 @@ package org.example.types;
 
 import org.example.interpreter.ValueReference;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Hashtable;
 
-public class Date {
-    private final ValueReference isAD;
-    private final ValueReference year;
-    private final ValueReference month;
-    private final ValueReference day;
-    private final ValueReference hour;
-    private final ValueReference minute;
-    private final ValueReference second;
+/**
+ * Date of the proleptic Gregorian calendar. All of its fields are packed into a single long,
+ * see {@link #pack}, and the getters take them out of it when they are needed.
+ * The packed long is also the key dates are ordered by, so comparing two dates compares two longs.
+ * <p>
+ * The references to the fields that member access works with are views of the packed date,
+ * a value assigned through them is checked and packed just like one passed to the setters.
+ */
+public class Date implements Comparable<Date> {
+    private static final int SECOND_SHIFT = 0;
+    private static final int MINUTE_SHIFT = 6;
+    private static final int HOUR_SHIFT = 12;
+    private static final int DAY_SHIFT = 17;
+    private static final int MONTH_SHIFT = 22;
+    private static final int YEAR_SHIFT = 26;
+
+    private long fields;
 
     public ValueReference getIsADReference(){
-        return this.isAD;
+        return new FieldReference(this::isAD, value -> setAD((Boolean) value), Boolean.class, "Invalid era value");
     }
     public ValueReference getYearReference(){
-        return year;
+        return new FieldReference(this::getYear, value -> setYear((Integer) value), Integer.class, "Invalid years value");
     }
     public ValueReference getMonthReference(){
-        return month;
+        return new FieldReference(this::getMonth, value -> setMonth((Integer) value), Integer.class, "Invalid month value");
     }
     public ValueReference getDayReference(){
-        return day;
+        return new FieldReference(this::getDay, value -> setDay((Integer) value), Integer.class, "Invalid days value");
     }
     public ValueReference getHourReference(){
-        return hour;
+        return new FieldReference(this::getHour, value -> setHour((Integer) value), Integer.class, "Invalid hours value");
     }
     public ValueReference getMinuteReference(){
-        return minute;
+        return new FieldReference(this::getMinute, value -> setMinute((Integer) value), Integer.class, "Invalid minutes value");
     }
     public ValueReference getSecondReference(){
-        return second;
+        return new FieldReference(this::getSecond, value -> setSecond((Integer) value), Integer.class, "Invalid seconds value");
     }
 
     public void setAD(Boolean isAD){
-        this.isAD.setValue(isAD);
+        set(isAD, getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond());
     }
     public void setYear(Integer year){
-        this.year.setValue(year);
-        verify();
+        set(isAD(), year, getMonth(), getDay(), getHour(), getMinute(), getSecond());
     }
     public void setMonth(Integer month){
-        this.month.setValue(month);
-        verify();
+        set(isAD(), getYear(), month, getDay(), getHour(), getMinute(), getSecond());
     }
     public void setDay(Integer day){
-        this.day.setValue(day);
-        verify();
+        set(isAD(), getYear(), getMonth(), day, getHour(), getMinute(), getSecond());
     }
     public void setHour(Integer hour){
-        this.hour.setValue(hour);
-        verify();
+        set(isAD(), getYear(), getMonth(), getDay(), hour, getMinute(), getSecond());
     }
     public void setMinute(Integer minute){
-        this.minute.setValue(minute);
-        verify();
+        set(isAD(), getYear(), getMonth(), getDay(), getHour(), minute, getSecond());
     }
     public void setSecond(Integer second){
-        this.second.setValue(second);
-        verify();
+        set(isAD(), getYear(), getMonth(), getDay(), getHour(), getMinute(), second);
+    }
+
+    /**
+     * Starts a change of several fields that is checked once, when it is applied. Each of the setters
+     * checks the whole date on its own, so changing the fields one by one can fail on the dates in between.
+     */
+    public DateMutation edit() {
+        return new DateMutation(this);
+    }
+
+    void set(boolean isAD, int year, int month, int day, int hour, int minute, int second) {
+        verify(isAD, year, month, day, hour, minute, second);
+        fields = pack(astronomicalYear(isAD, year), month, day, hour, minute, second);
+    }
+
+    /**
+     * Packs the fields of a valid date into a long, with the astronomical year in the highest bits
+     * and the second in the lowest ones, so that later dates are packed into greater numbers.
+     */
+    static long pack(long astronomicalYear, int month, int day, int hour, int minute, int second) {
+        return astronomicalYear << YEAR_SHIFT
+                | (long) month << MONTH_SHIFT
+                | (long) day << DAY_SHIFT
+                | (long) hour << HOUR_SHIFT
+                | (long) minute << MINUTE_SHIFT
+                | (long) second << SECOND_SHIFT;
     }
 
-    private Boolean isAD(){
-        return (Boolean) getIsADReference().getValue();
+    long astronomicalYear(){
+        return fields >> YEAR_SHIFT;
+    }
+    boolean isAD(){
+        return astronomicalYear() >= 1;
     }
-    private Integer getYear(){
-        return (Integer) getYearReference().getValue();
+    int getYear(){
+        long astronomicalYear = astronomicalYear();
+        return (int) (astronomicalYear >= 1 ? astronomicalYear : 1 - astronomicalYear);
     }
-    private Integer getMonth(){
-        return (Integer) getMonthReference().getValue();
+    int getMonth(){
+        return (int) (fields >> MONTH_SHIFT & 0xF);
     }
-    private Integer getDay(){
-        return (Integer) getDayReference().getValue();
+    int getDay(){
+        return (int) (fields >> DAY_SHIFT & 0x1F);
     }
-    private Integer getHour(){
-        return (Integer) getHourReference().getValue();
+    int getHour(){
+        return (int) (fields >> HOUR_SHIFT & 0x1F);
     }
-    private Integer getMinute(){
-        return (Integer) getMinuteReference().getValue();
+    int getMinute(){
+        return (int) (fields >> MINUTE_SHIFT & 0x3F);
     }
-    private Integer getSecond(){
-        return (Integer) getSecondReference().getValue();
+    int getSecond(){
+        return (int) (fields >> SECOND_SHIFT & 0x3F);
     }
 
+    static final long SECONDS_IN_DAY = 24L * 60L * 60L;
+
     public static Hashtable<Integer, Integer> daysInMonth = new Hashtable<>() {{
         put(1, 31);
         put(2, 28); // leap years are handled separately
@@ -102,293 +138,138 @@ public class Date {
     }};
 
     public static boolean isLeapYear(int year) {
-        if (year % 400 == 0) return true;
-        if (year % 100 == 0) return false;
-        return year % 4 == 0;
+        return CalendarTables.isLeapYear(year);
     }
 
     public static int leapYearsUntil(int year) {
         return year / 4 - year / 100 + year / 400;
     }
 
+    /**
+     * Year numbered the way the proleptic Gregorian calendar does it, with 1 BC as year 0, 2 BC as year -1 and so on.
+     */
+    static long astronomicalYear(boolean isAD, int year) {
+        return isAD ? year : 1L - year;
+    }
+
+    /**
+     * Compares the dates by the order of their packed fields, which is the order of the dates.
+     */
     public static int compare(Date date1, Date date2) {
-        int result = Boolean.compare((Boolean) date1.getIsADReference().getValue(), (Boolean) date2.getIsADReference().getValue());
-        if ( result != 0) return result;
-        int flip = ((Boolean) date1.getIsADReference().getValue()) ? 1 : -1;
-        result = flip * Integer.compare((Integer) date1.getYearReference().getValue(), (Integer) date2.getYearReference().getValue());
-        if ( result != 0) return result;
-        result = Integer.compare((Integer) date1.getMonthReference().getValue(), (Integer) date2.getMonthReference().getValue());
-        if ( result != 0) return result;
-        result = Integer.compare((Integer) date1.getDayReference().getValue(), (Integer) date2.getDayReference().getValue());
-        if ( result != 0) return result;
-        result = Integer.compare((Integer) date1.getHourReference().getValue(), (Integer) date2.getHourReference().getValue());
-        if ( result != 0) return result;
-        result = Integer.compare((Integer) date1.getMinuteReference().getValue(), (Integer) date2.getMinuteReference().getValue());
-        if ( result != 0) return result;
-        return Integer.compare((Integer) date1.getSecondReference().getValue(), (Integer) date2.getSecondReference().getValue());
+        return date1.compareTo(date2);
     }
 
-    public static Date fromString(String string){
-        if (string.length() == 0){
-            return null;
-        }
-        int index = 0;
-        Boolean isAd = null;
-        Integer year = null;
-        Integer month = null;
-        Integer day = null;
-        Integer hour = null;
-        Integer minute = null;
-        Integer second = null;
-        int sum;
-        for (int unitSymbol: Arrays.asList('y', 'm', 'd', 'h', '\'', '\"')) {
-            sum = 0;
-            while (index < string.length() && isDigit(string.charAt(index))) {
-                int digit = string.charAt(index) - '0';
-                if ((Integer.MAX_VALUE - digit) / 10 < sum) {
-                    return null;
-                }
-                sum = sum * 10 + digit;
-                index++;
-            }
-            if (isAd == null){
-                if (index > string.length() - 3){
-                    return null;
-                }
-                if ("yYaAbB".indexOf(string.charAt(index)) == -1 ){
-                    return null;
-                }
-                if (Character.toLowerCase(string.charAt(index)) == 'y'){
-                    index++;
-                    isAd = true;
-                } else if (Character.toLowerCase(string.charAt(index)) == 'a' && Character.toLowerCase(string.charAt(index+1)) == 'd') {
-                    index += 2;
-                    isAd = true;
-                } else if (Character.toLowerCase(string.charAt(index)) == 'b' && Character.toLowerCase(string.charAt(index+1)) == 'c') {
-                    index += 2;
-                    isAd = false;
-                } else {
-                    return null;
-                }
-                if (string.charAt(index) != ':'){
-                    return null;
-                }
-                index++;
-                year = sum;
-            } else if (Character.toLowerCase(string.charAt(index)) != unitSymbol ) {
-                return null;
-            } else {
-                switch (unitSymbol){
-                    case 'm':
-                        month = sum;
-                        break;
-                    case 'd':
-                        day = sum;
-                        break;
-                    case 'h':
-                        hour = sum;
-                        break;
-                    case '\'':
-                        minute = sum;
-                        break;
-                    case '"':
-                        second = sum;
-                        break;
-                }
-                index++;
-                if (index < string.length() && string.charAt(index) != ':'){
-                    return null;
-                }
-                index++;
-            }
-        }
-        // noinspection DataFlowIssue
-        return new Date(isAd, year, month, day, hour, minute, second);
+    @Override
+    public int compareTo(Date date) {
+        return Long.compare(fields, date.fields);
     }
 
-    private static boolean isDigit(int character){
-        return '9' >= character && character >= '0';
+    public static Date fromString(String string){
+        return fromString(string, new TemporalParser(false));
     }
 
+    /**
+     * @return null if the text is not a date
+     * @throws IllegalArgumentException if the text is a date, but one of its fields is out of range
+     */
+    public static Date fromString(CharSequence text, TemporalParser parser){
+        long fields = parser.parseDate(text, 0, text.length());
+        return fields == TemporalParser.INVALID_DATE ? null : new Date(fields);
+    }
 
     @Override
     public String toString() {
-        return (isAD() ? "AD " : "BC ") + getYear() + "." +
-                (getMonth() < 10 ? 0 : "") + getMonth() + "." +
-                (getDay() < 10 ? 0 : "") + getDay() + " " +
-                (getHour() < 10 ? 0 : "") + getHour() + ":" +
-                (getMinute() < 10 ? 0 : "") + getMinute() + ":" +
-                (getSecond() < 10 ? 0 : "") + getSecond();
+        StringBuilder builder = new StringBuilder(24);
+        try {
+            appendTo(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the date as toString() returns it, without allocating anything on the way.
+     */
+    public void appendTo(Appendable sink) throws IOException {
+        sink.append(isAD() ? "AD " : "BC ");
+        Digits.appendNumber(sink, getYear());
+        sink.append('.');
+        Digits.appendTwoDigits(sink, getMonth());
+        sink.append('.');
+        Digits.appendTwoDigits(sink, getDay());
+        sink.append(' ');
+        Digits.appendTwoDigits(sink, getHour());
+        sink.append(':');
+        Digits.appendTwoDigits(sink, getMinute());
+        sink.append(':');
+        Digits.appendTwoDigits(sink, getSecond());
     }
 
     public Date(Boolean isAD, int year, int month, int day, int hour, int minute, int second) {
-        this.isAD = new ValueReference(isAD);
-        this.year = new ValueReference(year);
-        this.month = new ValueReference(month);
-        this.day = new ValueReference(day);
-        this.hour = new ValueReference(hour);
-        this.minute = new ValueReference(minute);
-        this.second = new ValueReference(second);
-        verify();
+        set(isAD, year, month, day, hour, minute, second);
     }
 
     public Date(Date date){
-        this.isAD = new ValueReference(date.isAD.getValue());
-        this.year = new ValueReference(date.year.getValue());
-        this.month = new ValueReference(date.month.getValue());
-        this.day = new ValueReference(date.day.getValue());
-        this.hour = new ValueReference(date.hour.getValue());
-        this.minute = new ValueReference(date.minute.getValue());
-        this.second = new ValueReference(date.second.getValue());
+        this.fields = date.fields;
+    }
+
+    private Date(long fields){
+        this.fields = fields;
     }
 
     public void verify() {
-        if (getYear() < 1) {
+        verify(isAD(), getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond());
+    }
+
+    static void verify(boolean isAD, int year, int month, int day, int hour, int minute, int second) {
+        if (year < 1) {
             throw new IllegalArgumentException("Invalid years value");
         }
-        if (getMonth() <= 0 || 12 < getMonth()) {
+        if (month <= 0 || 12 < month) {
             throw new IllegalArgumentException("Invalid month value");
         }
-        if (getDay() <= 0 || (isLeapYear(getYear()) && getMonth() == 2 && getDay() > 29) || getDay() > daysInMonth.get(getMonth())) {
+        if (day <= 0 || day > CalendarTables.daysInMonth(astronomicalYear(isAD, year), month)) {
             throw new IllegalArgumentException("Invalid days value");
         }
-        if (getHour() < 0 || 24 <= getHour()) {
+        if (hour < 0 || 24 <= hour) {
             throw new IllegalArgumentException("Invalid hours value");
         }
-        if (getMinute() < 0 || 60 <= getMinute()) {
+        if (minute < 0 || 60 <= minute) {
             throw new IllegalArgumentException("Invalid minutes value");
         }
-        if (getSecond() < 0 || 60 <= getSecond()) {
+        if (second < 0 || 60 <= second) {
             throw new IllegalArgumentException("Invalid seconds value");
         }
     }
 
-    public boolean equals(Date otherDate) {
-        return compare(this, otherDate) == 0;
-    }
-
-    public long secondsSinceNewEra() {
-        long seconds = getSecond();
-        seconds += 60L * getMinute();
-        seconds += 60L * 60L * getHour();
-        seconds += 60L * 60L * 24L * (getDay() - 1);
-        if (getMonth() >= 2)
-            seconds += 60L * 60L * 24L * 31; //January
-        if (getMonth() >= 3) {
-            if (isLeapYear(getYear())) {
-                seconds += 60L * 60L * 24L * 29; //Leap February
-            } else {
-                seconds += 60L * 60L * 24L * 28; //Regular February
-            }
-            for (int i = 3; i <= getMonth() - 1; i++) {
-                seconds += 60L * 60L * 24L * daysInMonth.get(i);
-            }
-        }
-        seconds += 60L * 60L * 24L * 366L * leapYearsUntil(getYear());
-        long yearsInSeconds = 60L * 60L * 24L * 365L * (getYear() - leapYearsUntil(getYear()) - 1);
-        if (!isAD()) yearsInSeconds *= -1;
-        seconds += yearsInSeconds;
-        return seconds;
-    }
-
-    private void addToYear(int years){
-        int signedYear = getYear() * (isAD() ? 1 : -1);
-        if (years > 0  && signedYear > 0){
-            setYear(signedYear + years);
-        } else if (years < 0 && signedYear > 0){
-            if (signedYear + years >= 1){
-                setYear(signedYear+years);
-            } else {
-                setAD(false);
-                setYear((1 - (signedYear - years))); // signedYear = 4, years = -7, 1 - (4-7) =
-            }
-        } else if (years > 0 && signedYear < 0) {
-            if (signedYear + years <= -1){
-                setYear(signedYear+years);
-            } else {
-                setAD(true);
-                setYear((1 - (signedYear - years)));
-            }
-        } else if (years < 0 && signedYear < 0) {
-            setYear(signedYear - years);
-        }
-    }
-
-    @SuppressWarnings("SameParameterValue")
-    private void addToMonth(int months){
-        int years = (getMonth() + months) / 12;
-        addToYear(years);
-        setMonth((getMonth() + months) % 12);
-    }
-
-    private void addToDay(int days){
-        while (getDay() + days >= daysInMonth.get(getMonth())){
-            days -= daysInMonth.get(getMonth()) - getDay();
-            addToMonth(1);
-            setDay(1);
-        }
-        setDay(getDay() + days);
-    }
-
-    private void addToHour(int hours){
-        int days = (getHour() + hours) / 24;
-        if (getHour() + hours < 0){
-            days--;
-        }
-        addToDay(days);
-        setHour((getHour() + hours) % 24);
-    }
-
-    private void addToMinute(int minutes){
-        int hours = (getMinute() + minutes) / 60;
-        if (getMinute() + minutes < 0){
-            hours--;
-        }
-        addToHour(hours);
-        setMinute((getMinute() + minutes) % 60);
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof Date)) return false;
+        return fields == ((Date) other).fields;
     }
 
-    private void addToSecond(int seconds){
-        int minutes = (getSecond() + seconds) / 60;
-        if (getSecond() + seconds < 0){
-            minutes--;
-        }
-        addToMinute(minutes);
-        setSecond((getSecond() + seconds) % 60);
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fields);
     }
 
-    private void addToSecond(long seconds){
-        while (seconds + getSecond() >= 60){
-            seconds -= 60 - getSecond();
-            addToMinute(1);
-            setSecond(0);
-        }
-        setSecond(getSecond() + Math.toIntExact(seconds));
+    public long secondsSinceNewEra() {
+        return SECONDS_IN_DAY * CalendarTables.DEFAULT.daysSinceNewEra(astronomicalYear(), getMonth(), getDay())
+                + 60L * 60L * getHour() + 60L * getMinute() + getSecond();
     }
 
-
     public Date add(Period period) {
-        Date original = new Date(isAD(), getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond());
-        original.addToYear((Integer) period.getYearReference().getValue());
-        original.addToMonth((Integer) period.getMonthReference().getValue());
-        original.addToDay((Integer) period.getDayReference().getValue());
-        original.addToHour((Integer) period.getHourReference().getValue());
-        original.addToMinute((Integer) period.getMinuteReference().getValue());
-        original.addToSecond((Integer) period.getSecondReference().getValue());
-        original.addToSecond((Long) period.getAbsolutePeriodDifferenceReference().getValue());
-        return original;
+        DateRegister register = new DateRegister().load(this);
+        register.add(period);
+        return register.toDate();
     }
 
     public Date subtract(Period period) {
-        Date original = new Date(isAD(), getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond());
-        original.addToYear(- (Integer) period.getYearReference().getValue());
-        original.addToMonth(- (Integer) period.getMonthReference().getValue());
-        original.addToDay(- (Integer) period.getDayReference().getValue());
-        original.addToHour(- (Integer) period.getHourReference().getValue());
-        original.addToMinute(- (Integer) period.getMinuteReference().getValue());
-        original.addToSecond(- (Integer) period.getSecondReference().getValue());
-        original.addToSecond(- (Long) period.getAbsolutePeriodDifferenceReference().getValue());
-        return original;
+        DateRegister register = new DateRegister().load(this);
+        register.subtract(period);
+        return register.toDate();
     }
 
     public Period subtract(Date date) {
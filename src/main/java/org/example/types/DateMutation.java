@@ -0,0 +1,74 @@
+package org.example.types;
+
+/**
+ * Change of several fields of a Date that is checked once, when it is applied. The fields in between
+ * do not have to make a valid date, so a date can be moved from January 31st to February 28th
+ * by changing its month and day in any order:
+ * {@code date.edit().month(2).day(28).apply()}.
+ */
+public class DateMutation {
+    private final Date date;
+    private boolean isAD;
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+
+    DateMutation(Date date) {
+        this.date = date;
+        this.isAD = date.isAD();
+        this.year = date.getYear();
+        this.month = date.getMonth();
+        this.day = date.getDay();
+        this.hour = date.getHour();
+        this.minute = date.getMinute();
+        this.second = date.getSecond();
+    }
+
+    public DateMutation isAD(boolean isAD) {
+        this.isAD = isAD;
+        return this;
+    }
+
+    public DateMutation year(int year) {
+        this.year = year;
+        return this;
+    }
+
+    public DateMutation month(int month) {
+        this.month = month;
+        return this;
+    }
+
+    public DateMutation day(int day) {
+        this.day = day;
+        return this;
+    }
+
+    public DateMutation hour(int hour) {
+        this.hour = hour;
+        return this;
+    }
+
+    public DateMutation minute(int minute) {
+        this.minute = minute;
+        return this;
+    }
+
+    public DateMutation second(int second) {
+        this.second = second;
+        return this;
+    }
+
+    /**
+     * Checks the changed fields and writes them into the date, which is left as it was if they are not a valid date.
+     * @return the changed date
+     * @throws IllegalArgumentException if one of the fields is out of range
+     */
+    public Date apply() {
+        date.set(isAD, year, month, day, hour, minute, second);
+        return date;
+    }
+}
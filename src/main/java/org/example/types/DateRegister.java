@@ -0,0 +1,109 @@
+package org.example.types;
+
+/**
+ * Date kept in primitive fields while periods are added to it. A chain of additions and subtractions
+ * changes a single register, so only the Date made at the end is allocated.
+ * <p>
+ * Adding a period takes the same time however long it is. Years and months are added as a number of months,
+ * the day has to exist in the month reached. The rest of the period is added to the seconds since the new era,
+ * which are turned back into a date of the proleptic Gregorian calendar.
+ */
+public class DateRegister {
+    private boolean isAD;
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+
+    public DateRegister load(Date date) {
+        isAD = date.isAD();
+        year = date.getYear();
+        month = date.getMonth();
+        day = date.getDay();
+        hour = date.getHour();
+        minute = date.getMinute();
+        second = date.getSecond();
+        return this;
+    }
+
+    /**
+     * Loads the date the given number of seconds after AD 1.01.01 00:00:00.
+     */
+    DateRegister load(long secondsSinceNewEra) {
+        setSecondsSinceNewEra(secondsSinceNewEra);
+        return this;
+    }
+
+    long secondsSinceNewEra() {
+        return Date.SECONDS_IN_DAY * CalendarTables.DEFAULT.daysSinceNewEra(Date.astronomicalYear(isAD, year), month, day)
+                + 60L * 60L * hour + 60L * minute + second;
+    }
+
+    public Date toDate() {
+        return new Date(isAD, year, month, day, hour, minute, second);
+    }
+
+    public void add(Period period) {
+        add(period.getYear(), period.getMonth(), period.getDay(), period.getHour(), period.getMinute(), period.getSecond(),
+                period.getAbsolutePeriodDifference());
+    }
+
+    public void subtract(Period period) {
+        add(-period.getYear(), -period.getMonth(), -period.getDay(), -period.getHour(), -period.getMinute(), -period.getSecond(),
+                -period.getAbsolutePeriodDifference());
+    }
+
+    public void add(PeriodRegister period) {
+        add(period.year, period.month, period.day, period.hour, period.minute, period.second,
+                period.absolutePeriodDifference);
+    }
+
+    public void subtract(PeriodRegister period) {
+        add(-period.year, -period.month, -period.day, -period.hour, -period.minute, -period.second,
+                -period.absolutePeriodDifference);
+    }
+
+    private void add(int years, int months, int days, int hours, int minutes, int seconds, long absoluteSeconds) {
+        if (years != 0 || months != 0) {
+            long monthsSinceYearZero = Date.astronomicalYear(isAD, year) * 12 + month - 1 + 12L * years + months;
+            long astronomicalYear = Math.floorDiv(monthsSinceYearZero, 12);
+            month = Math.floorMod(monthsSinceYearZero, 12) + 1;
+            if (day > CalendarTables.daysInMonth(astronomicalYear, month)) {
+                throw new IllegalArgumentException("Invalid days value");
+            }
+            setAstronomicalYear(astronomicalYear);
+        }
+        setSecondsSinceNewEra(secondsSinceNewEra()
+                + Date.SECONDS_IN_DAY * days + 60L * 60L * hours + 60L * minutes + seconds + absoluteSeconds);
+    }
+
+    private void setSecondsSinceNewEra(long secondsSinceNewEra) {
+        long days = Math.floorDiv(secondsSinceNewEra, Date.SECONDS_IN_DAY);
+        int secondOfDay = (int) Math.floorMod(secondsSinceNewEra, Date.SECONDS_IN_DAY);
+        hour = secondOfDay / 3600;
+        minute = secondOfDay / 60 % 60;
+        second = secondOfDay % 60;
+
+        long daysSinceMarch = days + CalendarTables.DAYS_FROM_MARCH_TO_NEW_ERA;
+        long era = Math.floorDiv(daysSinceMarch, 146097);
+        long dayOfEra = daysSinceMarch - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+        day = (int) (dayOfYear - (153 * monthFromMarch + 2) / 5 + 1);
+        month = (int) (monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+        long astronomicalYear = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        setAstronomicalYear(astronomicalYear);
+    }
+
+    private void setAstronomicalYear(long astronomicalYear) {
+        isAD = astronomicalYear >= 1;
+        long year = isAD ? astronomicalYear : 1 - astronomicalYear;
+        if (year > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid years value");
+        }
+        this.year = (int) year;
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.types;
+
+import java.util.StringJoiner;
+
+/**
+ * Dates stored in a single column of seconds since the new era, see Date.secondsSinceNewEra().
+ * Vectors are never changed, every operation makes a new one with a single loop over primitive arrays.
+ * Periods without years and months last the same number of seconds from any date, so adding them is
+ * a plain addition for each date, the others are added to each date through a {@link DateRegister}.
+ */
+public class DateVector {
+    private final long[] secondsSinceNewEra;
+
+    DateVector(long[] secondsSinceNewEra) {
+        this.secondsSinceNewEra = secondsSinceNewEra;
+    }
+
+    /**
+     * Makes the vector of a date and the dates reached by adding the period to it again and again.
+     * @param count number of dates, the start included
+     */
+    public static DateVector sequence(Date start, Period step, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid vector size");
+        }
+        long[] result = new long[count];
+        if (!step.hasCalendarUnits()) {
+            long first = start.secondsSinceNewEra();
+            long seconds = step.fixedSeconds();
+            for (int i = 0; i < count; i++) {
+                result[i] = first + i * seconds;
+            }
+            return new DateVector(result);
+        }
+        DateRegister register = new DateRegister().load(start);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                register.add(step);
+            }
+            result[i] = register.secondsSinceNewEra();
+        }
+        return new DateVector(result);
+    }
+
+    public int size() {
+        return secondsSinceNewEra.length;
+    }
+
+    public Date get(int index) {
+        return new DateRegister().load(secondsSinceNewEra[index]).toDate();
+    }
+
+    /**
+     * @param sign 1 to add the period to every date, -1 to subtract it
+     */
+    public DateVector add(Period period, int sign) {
+        long[] result = new long[secondsSinceNewEra.length];
+        if (!period.hasCalendarUnits()) {
+            long seconds = sign * period.fixedSeconds();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = secondsSinceNewEra[i] + seconds;
+            }
+            return new DateVector(result);
+        }
+        DateRegister register = new DateRegister();
+        for (int i = 0; i < result.length; i++) {
+            register.load(secondsSinceNewEra[i]);
+            if (sign > 0) {
+                register.add(period);
+            } else {
+                register.subtract(period);
+            }
+            result[i] = register.secondsSinceNewEra();
+        }
+        return new DateVector(result);
+    }
+
+    /**
+     * Adds the periods of the vector to the dates pairwise.
+     * @param sign 1 to add the periods, -1 to subtract them
+     */
+    public DateVector add(PeriodVector periods, int sign) {
+        PeriodVector.requireSameSize(size(), periods.size());
+        long[] differences = periods.getDifferences();
+        long[] result = new long[secondsSinceNewEra.length];
+        Period units = periods.getUnits();
+        if (!units.hasCalendarUnits()) {
+            long seconds = units.fixedSeconds();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = secondsSinceNewEra[i] + sign * (seconds + differences[i]);
+            }
+            return new DateVector(result);
+        }
+        DateRegister register = new DateRegister();
+        for (int i = 0; i < result.length; i++) {
+            register.load(secondsSinceNewEra[i]);
+            if (sign > 0) {
+                register.add(units);
+            } else {
+                register.subtract(units);
+            }
+            result[i] = register.secondsSinceNewEra() + sign * differences[i];
+        }
+        return new DateVector(result);
+    }
+
+    /**
+     * Periods from the given date to each date of the vector, as Date.subtract(Date) gives them.
+     */
+    public PeriodVector subtract(Date date) {
+        long start = date.secondsSinceNewEra();
+        long[] result = new long[secondsSinceNewEra.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = secondsSinceNewEra[i] - start;
+        }
+        return new PeriodVector(new Period(0, 0, 0, 0, 0, 0, 0L), result);
+    }
+
+    /**
+     * Periods between the dates of both vectors, taken pairwise.
+     */
+    public PeriodVector subtract(DateVector dates) {
+        PeriodVector.requireSameSize(size(), dates.size());
+        long[] other = dates.secondsSinceNewEra;
+        long[] result = new long[secondsSinceNewEra.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = secondsSinceNewEra[i] - other[i];
+        }
+        return new PeriodVector(new Period(0, 0, 0, 0, 0, 0, 0L), result);
+    }
+
+    /**
+     * Counts the dates earlier than the given one.
+     */
+    public int countLess(Date date) {
+        long limit = date.secondsSinceNewEra();
+        int count = 0;
+        for (long seconds : secondsSinceNewEra) {
+            count += seconds < limit ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < secondsSinceNewEra.length; i++) {
+            joiner.add(get(i).toString());
+        }
+        return joiner.toString();
+    }
+}
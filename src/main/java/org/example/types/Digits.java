@@ -0,0 +1,47 @@
+package org.example.types;
+
+import java.io.IOException;
+
+/**
+ * Writes numbers into an Appendable one character at a time, so formatting a date or a period
+ * allocates no strings. Two-digit fields are taken from tables of their tens and ones digits.
+ */
+final class Digits {
+    private static final char[] TENS = new char[100];
+    private static final char[] ONES = new char[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            TENS[i] = (char) ('0' + i / 10);
+            ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+
+    private Digits() {
+    }
+
+    /**
+     * @param value number between 0 and 99, written with a leading zero if it is lower than 10
+     */
+    static void appendTwoDigits(Appendable sink, int value) throws IOException {
+        sink.append(TENS[value]).append(ONES[value]);
+    }
+
+    static void appendNumber(Appendable sink, long value) throws IOException {
+        if (value < 0) {
+            sink.append('-');
+            if (value == Long.MIN_VALUE) {
+                sink.append("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            sink.append((char) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.types;
+
+import org.example.interpreter.ValueReference;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reference to one field of a Date or a Period, which reads and writes the primitive field it stands for.
+ * Member access and member assignment work with these, the values themselves are never boxed.
+ */
+class FieldReference extends ValueReference {
+    private final Supplier<Object> getter;
+    private final Consumer<Object> setter;
+    private final Class<?> type;
+    private final String invalidValueMessage;
+
+    FieldReference(Supplier<Object> getter, Consumer<Object> setter, Class<?> type, String invalidValueMessage) {
+        super(null);
+        this.getter = getter;
+        this.setter = setter;
+        this.type = type;
+        this.invalidValueMessage = invalidValueMessage;
+    }
+
+    @Override
+    public Object getValue() {
+        return getter.get();
+    }
+
+    @Override
+    public void setValue(Object value) {
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException(invalidValueMessage);
+        }
+        setter.accept(value);
+    }
+}
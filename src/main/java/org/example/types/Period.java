@@ -2,83 +2,108 @@ package org.example.types;
 
 import org.example.interpreter.ValueReference;
 
-
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * Period of calendar units and seconds, kept in primitive fields. The units are not normalized,
+ * since member access reads each of them and 1h is a different period than 60' for equals.
+ * The references to the fields that member access works with are views of the fields.
+ */
 public class Period {
-    private final ValueReference year;
-    private final ValueReference month;
-    private final ValueReference day;
-    private final ValueReference hour;
-    private final ValueReference minute;
-    private final ValueReference second;
-    private final ValueReference absolutePeriodDifference;
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+    private long absolutePeriodDifference;
+    // the only variable holding this period, while it may be changed in place, see accumulate()
+    private ValueReference owner;
 
     public ValueReference getYearReference(){
-        return year;
+        return new FieldReference(this::getYear, value -> setYear((Integer) value), Integer.class, "Invalid years value");
     }
     public ValueReference getMonthReference(){
-        return month;
+        return new FieldReference(this::getMonth, value -> setMonth((Integer) value), Integer.class, "Invalid month value");
     }
     public ValueReference getDayReference(){
-        return day;
+        return new FieldReference(this::getDay, value -> setDay((Integer) value), Integer.class, "Invalid days value");
     }
     public ValueReference getHourReference(){
-        return hour;
+        return new FieldReference(this::getHour, value -> setHour((Integer) value), Integer.class, "Invalid hours value");
     }
     public ValueReference getMinuteReference(){
-        return minute;
+        return new FieldReference(this::getMinute, value -> setMinute((Integer) value), Integer.class, "Invalid minutes value");
     }
     public ValueReference getSecondReference(){
-        return second;
+        return new FieldReference(this::getSecond, value -> setSecond((Integer) value), Integer.class, "Invalid seconds value");
     }
 
     public ValueReference getAbsolutePeriodDifferenceReference(){
-        return absolutePeriodDifference;
+        return new FieldReference(this::getAbsolutePeriodDifference, value -> setAbsolutePeriodDifference((Long) value),
+                Long.class, "Invalid period difference value");
     }
 
     public void setYear(Integer year){
-        this.year.setValue(year);
+        this.year = year;
     }
     public void setMonth(Integer month){
-        this.month.setValue(month);
+        this.month = month;
     }
     public void setDay(Integer day){
-        this.day.setValue(day);
+        this.day = day;
     }
     public void setHour(Integer hour){
-        this.hour.setValue(hour);
+        this.hour = hour;
     }
     public void setMinute(Integer minute){
-        this.minute.setValue(minute);
+        this.minute = minute;
     }
     public void setSecond(Integer second){
-        this.second.setValue(second);
+        this.second = second;
     }
 
     public void setAbsolutePeriodDifference(Long seconds){
-        this.absolutePeriodDifference.setValue(seconds);
+        this.absolutePeriodDifference = seconds;
     }
 
-    private Integer getYear(){
-        return (Integer) getYearReference().getValue();
+    int getYear(){
+        return year;
     }
-    private Integer getMonth(){
-        return (Integer) getMonthReference().getValue();
+    int getMonth(){
+        return month;
     }
-    private Integer getDay(){
-        return (Integer) getDayReference().getValue();
+    int getDay(){
+        return day;
     }
-    private Integer getHour(){
-        return (Integer) getHourReference().getValue();
+    int getHour(){
+        return hour;
+    }
+    int getMinute(){
+        return minute;
     }
-    private Integer getMinute(){
-        return (Integer) getMinuteReference().getValue();
+    int getSecond(){
+        return second;
+    }
+
+    long getAbsolutePeriodDifference(){
+        return absolutePeriodDifference;
     }
-    private Integer getSecond(){
-        return (Integer) getSecondReference().getValue();
+
+    /**
+     * Whether adding the period to a date depends on the date, since years and months differ in length.
+     */
+    boolean hasCalendarUnits() {
+        return year != 0 || month != 0;
     }
 
-    private Long getAbsolutePeriodDifference(){
-        return (Long) getAbsolutePeriodDifferenceReference().getValue();
+    /**
+     * Seconds that the units from days on and the absolute difference last.
+     */
+    long fixedSeconds() {
+        return Date.SECONDS_IN_DAY * day + 60L * 60L * hour + 60L * minute + second + absolutePeriodDifference;
     }
 
     public static int compare(Period period1, Period period2) {
@@ -87,131 +112,130 @@ public class Period {
         return Long.compare(period1.getAbsolutePeriodDifference(), period2.getAbsolutePeriodDifference());
     }
 
-    private static boolean isDigit(int character) {
-        return '9' >= character && character >= '0';
+    public static Period fromString(String string) {
+        return fromString(string, new TemporalParser(false), new PeriodRegister());
     }
 
-    public static Period fromString(String string) {
-        string = string.strip();
-        if (string.length() == 0 || !isDigit(string.charAt(0))) {
-            return null;
-        }
-        int year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0;
-        int index = 0;
-        int sum;
-        while (index < string.length()){
-            sum = 0;
-            while (index < string.length() && Character.isWhitespace(string.charAt(index))){
-                index++;
-            }
-            while (index < string.length() && isDigit(string.charAt(index))) {
-                int digit = string.charAt(index) - '0';
-                if ((Integer.MAX_VALUE - digit) / 10 < sum) {
-                    return null;
-                }
-                sum = sum * 10 + digit;
-
-                index += 1;
-            }
-            if (index >= string.length()){
-                return null;
-            }
-            switch (Character.toLowerCase(string.charAt(index))){
-                case 'y':
-                    year += sum; break;
-                case 'm':
-                    month += sum; break;
-                case 'd':
-                    day += sum; break;
-                case 'h':
-                    hour += sum; break;
-                case '\'':
-                    minute += sum; break;
-                case '"':
-                    second += sum; break;
-            }
-            index++;
-        }
-        return new Period(year, month, day, hour, minute, second, 0L);
+    /**
+     * @param register register the period is parsed into before it is allocated
+     * @return null if the text is not a period
+     */
+    public static Period fromString(CharSequence text, TemporalParser parser, PeriodRegister register) {
+        return parser.parsePeriod(text, 0, text.length(), register) ? register.toPeriod() : null;
     }
 
     public Period(int year, int month, int day, int hour, int minute, int second, long absolutePeriodDifference) {
-        this.year = new ValueReference(year);
-        this.month = new ValueReference(month);
-        this.day = new ValueReference(day);
-        this.hour = new ValueReference(hour);
-        this.minute = new ValueReference(minute);
-        this.second = new ValueReference(second);
-        this.absolutePeriodDifference = new ValueReference(absolutePeriodDifference);
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
+        this.absolutePeriodDifference = absolutePeriodDifference;
     }
 
     public Period(Date start, Date end) {
-        this.year = new ValueReference(0);
-        this.month = new ValueReference(0);
-        this.day = new ValueReference(0);
-        this.hour = new ValueReference(0);
-        this.minute = new ValueReference(0);
-        this.second = new ValueReference(0);
-        this.absolutePeriodDifference = new ValueReference(end.secondsSinceNewEra() - start.secondsSinceNewEra());
+        this.absolutePeriodDifference = end.secondsSinceNewEra() - start.secondsSinceNewEra();
     }
 
     public Period(Period period){
-        this.year = new ValueReference(period.year.getValue());
-        this.month = new ValueReference(period.month.getValue());
-        this.day = new ValueReference(period.day.getValue());
-        this.hour = new ValueReference(period.hour.getValue());
-        this.minute = new ValueReference(period.minute.getValue());
-        this.second = new ValueReference(period.second.getValue());
-        this.absolutePeriodDifference = new ValueReference(period.absolutePeriodDifference.getValue());
+        this(period.year, period.month, period.day, period.hour, period.minute, period.second, period.absolutePeriodDifference);
     }
 
     @Override
-    public String toString() {
-        return getYear() + "." + getMonth() + "." + getDay() + " " + getHour() + ":" + getMinute() + ":"
-                + getSecond() + "+" + getAbsolutePeriodDifference() + "sec";
+    public boolean equals(Object other) {
+        // unlike compare(), equality looks at every unit, so 1M and 30D are different periods
+        if (this == other) return true;
+        if (!(other instanceof Period)) return false;
+        Period period = (Period) other;
+        return year == period.year && month == period.month && day == period.day && hour == period.hour
+                && minute == period.minute && second == period.second
+                && absolutePeriodDifference == period.absolutePeriodDifference;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(year, month, day, hour, minute, second, absolutePeriodDifference);
     }
 
-    private Period add(Period period, boolean flip){
-        Period original = new Period(getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond(), getAbsolutePeriodDifference());
-        original.setYear(original.getYear() + (flip ? -1 : 1) * period.getYear());
-        original.setMonth(original.getMonth() + (flip ? -1 : 1) * period.getMonth());
-        original.setDay(original.getDay() + (flip ? -1 : 1) * period.getDay());
-        original.setHour(original.getHour() + (flip ? -1 : 1) * period.getHour());
-        original.setMinute(original.getMinute() + (flip ? -1 : 1) * period.getMinute());
-        original.setSecond(original.getSecond() + (flip ? -1 : 1) * period.getSecond());
-        original.setAbsolutePeriodDifference(original.getAbsolutePeriodDifference() + (flip ? -1 : 1) * period.getAbsolutePeriodDifference());
-        return original;
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(32);
+        try {
+            appendTo(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the period as toString() returns it, without allocating anything on the way.
+     */
+    public void appendTo(Appendable sink) throws IOException {
+        Digits.appendNumber(sink, year);
+        sink.append('.');
+        Digits.appendNumber(sink, month);
+        sink.append('.');
+        Digits.appendNumber(sink, day);
+        sink.append(' ');
+        Digits.appendNumber(sink, hour);
+        sink.append(':');
+        Digits.appendNumber(sink, minute);
+        sink.append(':');
+        Digits.appendNumber(sink, second);
+        sink.append('+');
+        Digits.appendNumber(sink, absolutePeriodDifference);
+        sink.append("sec");
     }
 
     public Period add(Period period){
-        return add(period, false);
+        Period sum = new Period(this);
+        sum.addToFields(period, 1);
+        return sum;
     }
 
     public Period subtract(Period period){
-        return add(period, true);
+        Period difference = new Period(this);
+        difference.addToFields(period, -1);
+        return difference;
+    }
+
+    /**
+     * Adds a period to the one a variable holds, changing it in place if the variable is the only one holding it.
+     * A period made here is owned by the variable until {@link #release()} is called, which has to happen
+     * whenever the period could be seen by anything else, so that an accumulation loop allocates at most one period.
+     * @param sign 1 to add the period, -1 to subtract it
+     * @return the period the variable has to hold
+     */
+    public Period accumulate(ValueReference variable, Period period, int sign) {
+        Period sum = owner == variable ? this : new Period(this);
+        sum.addToFields(period, sign);
+        sum.owner = variable;
+        return sum;
+    }
+
+    public void release() {
+        owner = null;
+    }
+
+    private void addToFields(Period period, int sign) {
+        year += sign * period.year;
+        month += sign * period.month;
+        day += sign * period.day;
+        hour += sign * period.hour;
+        minute += sign * period.minute;
+        second += sign * period.second;
+        absolutePeriodDifference += sign * period.absolutePeriodDifference;
     }
 
     public Period multiply(Integer factor) {
-        Period original = new Period(getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond(), getAbsolutePeriodDifference());
-        original.setYear(original.getYear() * factor);
-        original.setMonth(original.getMonth() * factor);
-        original.setDay(original.getDay() * factor);
-        original.setHour(original.getHour() * factor);
-        original.setMinute(original.getMinute() * factor);
-        original.setSecond(original.getSecond() * factor);
-        original.setAbsolutePeriodDifference(original.getAbsolutePeriodDifference() * factor);
-        return original;
+        return new Period(year * factor, month * factor, day * factor, hour * factor, minute * factor, second * factor,
+                absolutePeriodDifference * factor);
     }
 
     public Period divide(Integer factor) {
-        Period original = new Period(getYear(), getMonth(), getDay(), getHour(), getMinute(), getSecond(), getAbsolutePeriodDifference());
-        original.setYear(original.getYear() / factor);
-        original.setMonth(original.getMonth() / factor);
-        original.setDay(original.getDay() / factor);
-        original.setHour(original.getHour() / factor);
-        original.setMinute(original.getMinute() / factor);
-        original.setSecond(original.getSecond() / factor);
-        original.setAbsolutePeriodDifference(original.getAbsolutePeriodDifference() / factor);
-        return original;
+        return new Period(year / factor, month / factor, day / factor, hour / factor, minute / factor, second / factor,
+                absolutePeriodDifference / factor);
     }
 }
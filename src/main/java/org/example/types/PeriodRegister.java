@@ -0,0 +1,50 @@
+package org.example.types;
+
+/**
+ * Period kept in primitive fields while a chain of additions and subtractions is summed up in it,
+ * so only the Period made at the end is allocated.
+ */
+public class PeriodRegister {
+    int year;
+    int month;
+    int day;
+    int hour;
+    int minute;
+    int second;
+    long absolutePeriodDifference;
+
+    public PeriodRegister clear() {
+        year = 0;
+        month = 0;
+        day = 0;
+        hour = 0;
+        minute = 0;
+        second = 0;
+        absolutePeriodDifference = 0;
+        return this;
+    }
+
+    public Period toPeriod() {
+        return new Period(year, month, day, hour, minute, second, absolutePeriodDifference);
+    }
+
+    /**
+     * @param sign 1 to add the period, -1 to subtract it
+     */
+    public void add(Period period, int sign) {
+        year += sign * period.getYear();
+        month += sign * period.getMonth();
+        day += sign * period.getDay();
+        hour += sign * period.getHour();
+        minute += sign * period.getMinute();
+        second += sign * period.getSecond();
+        absolutePeriodDifference += sign * period.getAbsolutePeriodDifference();
+    }
+
+    /**
+     * Adds the period between two dates, as Date.subtract(Date) gives it.
+     */
+    public void addDifference(Date end, Date start, int sign) {
+        absolutePeriodDifference += sign * (end.secondsSinceNewEra() - start.secondsSinceNewEra());
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.types;
+
+import java.util.StringJoiner;
+
+/**
+ * Periods stored in columns, made by subtracting dates of a {@link DateVector}.
+ * The calendar units are the same for every period of a vector, since all of its periods
+ * are changed by the same operations, so only the absolute differences are stored for each of them.
+ * Vectors are never changed, every operation makes a new one with a single loop over primitive arrays.
+ */
+public class PeriodVector {
+    // shared calendar units, its absolute difference is always 0
+    private final Period units;
+    private final long[] differences;
+
+    PeriodVector(Period units, long[] differences) {
+        this.units = units;
+        this.differences = differences;
+    }
+
+    public int size() {
+        return differences.length;
+    }
+
+    public Period get(int index) {
+        return new Period(units.getYear(), units.getMonth(), units.getDay(), units.getHour(), units.getMinute(),
+                units.getSecond(), differences[index]);
+    }
+
+    Period getUnits() {
+        return units;
+    }
+
+    long[] getDifferences() {
+        return differences;
+    }
+
+    /**
+     * @param sign 1 to add the period to every period of the vector, -1 to subtract it
+     */
+    public PeriodVector add(Period period, int sign) {
+        long difference = sign * period.getAbsolutePeriodDifference();
+        long[] result = new long[differences.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = differences[i] + difference;
+        }
+        return new PeriodVector(addUnits(period, sign), result);
+    }
+
+    /**
+     * Adds the periods of both vectors pairwise.
+     * @param sign 1 to add the periods, -1 to subtract them
+     */
+    public PeriodVector add(PeriodVector periods, int sign) {
+        requireSameSize(size(), periods.size());
+        long[] other = periods.differences;
+        long[] result = new long[differences.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = differences[i] + sign * other[i];
+        }
+        return new PeriodVector(addUnits(periods.units, sign), result);
+    }
+
+    public PeriodVector multiply(int factor) {
+        long[] result = new long[differences.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = differences[i] * factor;
+        }
+        return new PeriodVector(units.multiply(factor), result);
+    }
+
+    /**
+     * Counts the periods shorter than the given one, compared the way Period.compare compares them.
+     */
+    public int countLess(Period period) {
+        long limit = period.getAbsolutePeriodDifference();
+        int count = 0;
+        for (long difference : differences) {
+            count += difference < limit ? 1 : 0;
+        }
+        return count;
+    }
+
+    private Period addUnits(Period period, int sign) {
+        return new Period(units.getYear() + sign * period.getYear(), units.getMonth() + sign * period.getMonth(),
+                units.getDay() + sign * period.getDay(), units.getHour() + sign * period.getHour(),
+                units.getMinute() + sign * period.getMinute(), units.getSecond() + sign * period.getSecond(), 0L);
+    }
+
+    static void requireSameSize(int size, int otherSize) {
+        if (size != otherSize) {
+            throw new IllegalArgumentException(String.format("Vectors of different sizes: %d and %d", size, otherSize));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < differences.length; i++) {
+            joiner.add(get(i).toString());
+        }
+        return joiner.toString();
+    }
+}
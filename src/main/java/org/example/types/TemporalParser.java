@@ -0,0 +1,270 @@
+package org.example.types;
+
+/**
+ * Parses dates and periods from a range of characters without allocating anything, so a single parser
+ * can read any number of input lines. Dates are returned packed, see {@link Date#pack}, and periods
+ * are returned in a {@link PeriodRegister}.
+ * <p>
+ * Reads the formats of Date.fromString and Period.fromString, such as {@code 2023ad:5m:30d:23h:53':10"}
+ * and {@code 1y 2m 3d}. If ISO 8601 input is enabled, it also reads dates such as {@code 2023-05-30T23:53:10},
+ * where year 0 is 1 BC and year -1 is 2 BC, and durations such as {@code P1Y2M3DT4H5M6S}.
+ * <p>
+ * A parser keeps the position it reads at, so it must not be shared between threads.
+ */
+public class TemporalParser {
+    /**
+     * Returned instead of a packed date if the text is not a date. No valid date is packed into it.
+     */
+    public static final long INVALID_DATE = Long.MIN_VALUE;
+
+    private static final String DATE_UNITS = "mdh'\"";
+
+    private final boolean iso;
+    private CharSequence text;
+    private int index;
+    private int end;
+
+    /**
+     * @param iso whether ISO 8601 dates and durations are read too
+     */
+    public TemporalParser(boolean iso) {
+        this.iso = iso;
+    }
+
+    /**
+     * @return the packed date, or INVALID_DATE if the text is not a date
+     * @throws IllegalArgumentException if the text is a date, but one of its fields is out of range
+     */
+    public long parseDate(CharSequence text, int start, int end) {
+        this.text = text;
+        this.index = start;
+        this.end = end;
+        if (iso && isIsoDate()) {
+            return parseIsoDate();
+        }
+        int year = readNumber();
+        if (year < 0 || index > end - 3) {
+            return INVALID_DATE;
+        }
+        boolean isAD;
+        char era = lowerCaseAt(index);
+        if (era == 'y') {
+            index++;
+            isAD = true;
+        } else if (era == 'a' && lowerCaseAt(index + 1) == 'd') {
+            index += 2;
+            isAD = true;
+        } else if (era == 'b' && lowerCaseAt(index + 1) == 'c') {
+            index += 2;
+            isAD = false;
+        } else {
+            return INVALID_DATE;
+        }
+        if (text.charAt(index) != ':') {
+            return INVALID_DATE;
+        }
+        index++;
+        int month = 0, day = 0, hour = 0, minute = 0, second = 0;
+        for (int unit = 0; unit < DATE_UNITS.length(); unit++) {
+            int value = readNumber();
+            if (value < 0 || index >= end || lowerCaseAt(index) != DATE_UNITS.charAt(unit)) {
+                return INVALID_DATE;
+            }
+            index++;
+            if (index < end && text.charAt(index) != ':') {
+                return INVALID_DATE;
+            }
+            index++;
+            switch (unit) {
+                case 0: month = value; break;
+                case 1: day = value; break;
+                case 2: hour = value; break;
+                case 3: minute = value; break;
+                default: second = value;
+            }
+        }
+        Date.verify(isAD, year, month, day, hour, minute, second);
+        return Date.pack(Date.astronomicalYear(isAD, year), month, day, hour, minute, second);
+    }
+
+    /**
+     * @param period register the period is returned in, it is cleared first
+     * @return false if the text is not a period
+     */
+    public boolean parsePeriod(CharSequence text, int start, int end, PeriodRegister period) {
+        this.text = text;
+        this.index = start;
+        this.end = end;
+        period.clear();
+        skipWhitespace();
+        while (this.end > index && Character.isWhitespace(text.charAt(this.end - 1))) {
+            this.end--;
+        }
+        if (iso && index < this.end && lowerCaseAt(index) == 'p') {
+            return parseIsoPeriod(period);
+        }
+        if (index >= this.end || !isDigit(text.charAt(index))) {
+            return false;
+        }
+        while (index < this.end) {
+            skipWhitespace();
+            int value = readNumber();
+            if (value < 0 || index >= this.end) {
+                return false;
+            }
+            switch (lowerCaseAt(index)) {
+                case 'y': period.year += value; break;
+                case 'm': period.month += value; break;
+                case 'd': period.day += value; break;
+                case 'h': period.hour += value; break;
+                case '\'': period.minute += value; break;
+                case '"': period.second += value; break;
+            }
+            index++;
+        }
+        return true;
+    }
+
+    /**
+     * An ISO date has a dash right after the digits of its year, which the other format never has.
+     */
+    private boolean isIsoDate() {
+        int position = index;
+        if (position < end && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            position++;
+        }
+        int digits = position;
+        while (position < end && isDigit(text.charAt(position))) {
+            position++;
+        }
+        return position > digits && position < end && text.charAt(position) == '-';
+    }
+
+    private long parseIsoDate() {
+        boolean negative = text.charAt(index) == '-';
+        if (negative || text.charAt(index) == '+') {
+            index++;
+        }
+        int year = readNumber();
+        if (year < 0 || !skip('-')) {
+            return INVALID_DATE;
+        }
+        int month = readTwoDigits();
+        int day = skip('-') ? readTwoDigits() : -1;
+        if (month < 0 || day < 0 || index >= end || (text.charAt(index) != 'T' && text.charAt(index) != ' ')) {
+            return INVALID_DATE;
+        }
+        index++;
+        int hour = readTwoDigits();
+        int minute = skip(':') ? readTwoDigits() : -1;
+        int second = skip(':') ? readTwoDigits() : -1;
+        if (hour < 0 || minute < 0 || second < 0) {
+            return INVALID_DATE;
+        }
+        skip('Z');
+        if (index != end) {
+            return INVALID_DATE;
+        }
+        long astronomicalYear = negative ? -year : year;
+        boolean isAD = astronomicalYear >= 1;
+        Date.verify(isAD, (int) (isAD ? astronomicalYear : 1 - astronomicalYear), month, day, hour, minute, second);
+        return Date.pack(astronomicalYear, month, day, hour, minute, second);
+    }
+
+    /**
+     * Reads durations such as P1Y2M3W4DT5H6M7S, where M stands for months before the T and for minutes after it.
+     */
+    private boolean parseIsoPeriod(PeriodRegister period) {
+        index++;
+        boolean time = false;
+        boolean empty = true;
+        while (index < end) {
+            if (!time && lowerCaseAt(index) == 't') {
+                time = true;
+                index++;
+                continue;
+            }
+            int start = index;
+            int value = readNumber();
+            if (value < 0 || index == start || index >= end) {
+                return false;
+            }
+            switch (lowerCaseAt(index)) {
+                case 'y':
+                    if (time) return false;
+                    period.year += value; break;
+                case 'm':
+                    if (time) period.minute += value; else period.month += value;
+                    break;
+                case 'w':
+                    if (time) return false;
+                    period.day += 7 * value; break;
+                case 'd':
+                    if (time) return false;
+                    period.day += value; break;
+                case 'h':
+                    if (!time) return false;
+                    period.hour += value; break;
+                case 's':
+                    if (!time) return false;
+                    period.second += value; break;
+                default:
+                    return false;
+            }
+            index++;
+            empty = false;
+        }
+        return !empty;
+    }
+
+    /**
+     * Reads the digits at the current position, no digits are read as 0.
+     * @return -1 if the number does not fit into an int
+     */
+    private int readNumber() {
+        int sum = 0;
+        while (index < end && isDigit(text.charAt(index))) {
+            int digit = text.charAt(index) - '0';
+            if ((Integer.MAX_VALUE - digit) / 10 < sum) {
+                return -1;
+            }
+            sum = sum * 10 + digit;
+            index++;
+        }
+        return sum;
+    }
+
+    /**
+     * @return -1 if there are not two digits at the current position
+     */
+    private int readTwoDigits() {
+        if (index + 2 > end || !isDigit(text.charAt(index)) || !isDigit(text.charAt(index + 1))) {
+            return -1;
+        }
+        int value = (text.charAt(index) - '0') * 10 + text.charAt(index + 1) - '0';
+        index += 2;
+        return value;
+    }
+
+    private boolean skip(char character) {
+        if (index < end && text.charAt(index) == character) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (index < end && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+    }
+
+    private char lowerCaseAt(int position) {
+        return Character.toLowerCase(text.charAt(position));
+    }
+
+    private static boolean isDigit(char character) {
+        return '9' >= character && character >= '0';
+    }
+}
@@ -0,0 +1,93 @@
+import org.example.analysis.PurityAnalyzer;
+import org.example.error.CodeError;
+import org.example.error.ErrorManager;
+import org.example.error.Severity;
+import org.example.interpreter.PreparedProgram;
+import org.example.lexer.CodeLexer;
+import org.example.lexer.CommentLexer;
+import org.example.parser.Parser;
+import org.example.program.Program;
+import org.example.source.CodeSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisTests {
+
+    private static Program parse(String code, ErrorManager eM) throws IOException {
+        try (Reader sR = new StringReader(code)) {
+            CodeSource source = new CodeSource(sR, eM);
+            CodeLexer codeLexer = new CodeLexer(source, eM);
+            CommentLexer commentLexer = new CommentLexer(codeLexer);
+            Parser parser = new Parser(commentLexer, eM);
+            return parser.parse();
+        }
+    }
+
+    @Test
+    void pureFunctionsTest() throws IOException {
+        String code = "main() { print(daysIn(2), shifted(2023y:1m:1d:0h:0':0\")); }" +
+                "daysIn(m) { if (m == 2) { return 28; } return 31; }" +
+                "shifted(d) { d.day = 2; return d + 10d; }";
+        Set<String> pure = PurityAnalyzer.findPureFunctions(parse(code, new ErrorManager()));
+        assertEquals(Set.of("daysIn", "shifted"), pure);
+    }
+
+    @Test
+    void impureThroughCalleeTest() throws IOException {
+        String code = "main() { outer(); }" +
+                "outer() { return inner(1); }" +
+                "inner(x) { x = readInt(); return x; }" +
+                "logging(x) { print(x); return x; }" +
+                "undefinedCall() { return missing(); }";
+        Set<String> pure = PurityAnalyzer.findPureFunctions(parse(code, new ErrorManager()));
+        assertTrue(pure.isEmpty());
+    }
+
+    @Test
+    void recursiveFunctionsPurityTest() throws IOException {
+        String code = "main() { print(even(4)); }" +
+                "even(n) { if (n == 0) { return 1; } return odd(n - 1); }" +
+                "odd(n) { if (n == 0) { return 0; } return even(n - 1); }" +
+                "countdown(n) { if (n == 0) { print([done]); return 0; } return countdown(n - 1); }";
+        Set<String> pure = PurityAnalyzer.findPureFunctions(parse(code, new ErrorManager()));
+        assertEquals(Set.of("even", "odd"), pure);
+    }
+
+    private static String staticError(String code) throws IOException {
+        ErrorManager eM = new ErrorManager();
+        Program program = parse(code, eM);
+        assertThrows(CodeError.class, () -> PreparedProgram.prepare(program, eM));
+        return eM.getErrors().get(eM.getErrors().size() - 1).getMessage();
+    }
+
+    @Test
+    void semanticErrorsFoundBeforeExecutionTest() throws IOException {
+        // none of the bad statements would ever run
+        assertEquals("Reference to an undefined function: missing",
+                staticError("main() { if (false) { missing(); } }"));
+        assertEquals("Mismatched arguments. Function takes 2 parameters, but 1 were provided ",
+                staticError("main() { x = 0; while (x > 0) { add(x); } } add(a, b) { return a + b; }"));
+        assertEquals("Neither Date nor Period has a field named \"days\"",
+                staticError("main() { d = readDate(); if (false) { print(d.days); } }"));
+        assertEquals("Neither Date nor Period has a method named \"toString\"",
+                staticError("main() { d = readDate(); if (false) { print(d.toString()); } }"));
+        assertEquals("Boolean expression expected inside \"while\" condition ",
+                staticError("main() { if (false) { while (1 + 1) { } } }"));
+        assertEquals("Reference to an undefined function: main", staticError("start() { }"));
+    }
+
+    @Test
+    void readArgumentsWarnedOnceTest() throws IOException {
+        ErrorManager eM = new ErrorManager();
+        Program program = parse("main() { i = 0; while (i < 3) { readString(i); i = i + 1; } }", eM);
+        PreparedProgram.prepare(program, eM).execute(eM, () -> "line", new StringBuilder());
+        assertEquals(1, eM.getErrors().size());
+        assertEquals(Severity.WARN, eM.getErrors().get(0).getSeverity());
+    }
+}
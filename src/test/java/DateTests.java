@@ -1,7 +1,21 @@
+import org.example.interpreter.ValueReference;
 import org.example.types.Date;
+import org.example.types.DateVector;
 import org.example.types.Period;
+import org.example.types.PeriodRegister;
+import org.example.types.PeriodVector;
+import org.example.types.TemporalParser;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -351,6 +365,347 @@ public class DateTests {
         assertEquals(1, result.getMinuteReference().getValue());
         assertEquals(1, result.getSecondReference().getValue());
     }
-}
 
+    @Test
+    void dateHashCodeTest() {
+        var date1 = new Date(true, 2023, 5, 30, 23, 53, 10);
+        var date2 = new Date(true, 2023, 5, 30, 23, 53, 10);
+        assertEquals(date1, date2);
+        assertEquals(date1.hashCode(), date2.hashCode());
+        assertNotEquals(date1, new Date(false, 2023, 5, 30, 23, 53, 10));
+    }
+
+    @Test
+    void periodEqualsTest() {
+        Period period1 = new Period(0, 1, 0, 0, 0, 0, 0L);
+        Period period2 = new Period(0, 1, 0, 0, 0, 0, 0L);
+        Period period3 = new Period(0, 0, 30, 0, 0, 0, 0L);
+        assertEquals(period1, period2);
+        assertEquals(period1.hashCode(), period2.hashCode());
+        assertNotEquals(period1, period3);
+    }
+
+    @Test
+    void addPeriodAcrossMonthEndTest() {
+        assertEquals(new Date(true, 2023, 2, 1, 0, 0, 0), new Date(true, 2023, 1, 31, 0, 0, 0).add(new Period(0, 0, 1, 0, 0, 0, 0L)));
+        assertEquals(new Date(true, 2023, 1, 31, 0, 0, 0), new Date(true, 2023, 1, 1, 0, 0, 0).add(new Period(0, 0, 30, 0, 0, 0, 0L)));
+        assertEquals(new Date(true, 2024, 2, 29, 0, 0, 0), new Date(true, 2024, 2, 28, 0, 0, 0).add(new Period(0, 0, 1, 0, 0, 0, 0L)));
+        assertEquals(new Date(true, 2023, 12, 31, 23, 0, 0), new Date(true, 2024, 1, 1, 0, 0, 0).subtract(new Period(0, 0, 0, 1, 0, 0, 0L)));
+        assertEquals(new Date(true, 2024, 1, 15, 0, 0, 0), new Date(true, 2023, 11, 15, 0, 0, 0).add(new Period(0, 2, 0, 0, 0, 0, 0L)));
+    }
+
+    @Test
+    void addPeriodAcrossErasTest() {
+        assertEquals(new Date(true, 1, 1, 1, 0, 0, 0), new Date(false, 1, 12, 31, 23, 59, 59).add(new Period(0, 0, 0, 0, 0, 1, 0L)));
+        assertEquals(new Date(false, 1, 12, 31, 23, 59, 59), new Date(true, 1, 1, 1, 0, 0, 0).subtract(new Period(0, 0, 0, 0, 0, 0, 1L)));
+        assertEquals(new Date(false, 2, 6, 1, 0, 0, 0), new Date(true, 2, 6, 1, 0, 0, 0).subtract(new Period(3, 0, 0, 0, 0, 0, 0L)));
+        assertEquals(new Date(false, 1, 2, 29, 0, 0, 0), new Date(false, 1, 2, 28, 0, 0, 0).add(new Period(0, 0, 1, 0, 0, 0, 0L)));
+        assertThrows(IllegalArgumentException.class, () -> new Date(false, 2, 2, 29, 0, 0, 0));
+    }
 
+    @Test
+    void addLongPeriodTest() {
+        var date = new Date(true, 2023, 5, 30, 23, 53, 10);
+        var period = new Period(0, 0, 0, 0, 0, 0, 1_000_000_000_000L);
+        assertEquals(date, date.add(period).subtract(period));
+        assertEquals(1_000_000_000_000L, date.add(period).secondsSinceNewEra() - date.secondsSinceNewEra());
+        assertEquals(new Date(true, 3023, 5, 30, 23, 53, 10), date.add(new Period(1000, 0, 0, 0, 0, 0, 0L)));
+    }
+
+    @Test
+    void addMonthsToMissingDayTest() {
+        var date = new Date(true, 2023, 1, 31, 0, 0, 0);
+        var month = new Period(0, 1, 0, 0, 0, 0, 0L);
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> date.add(month));
+        assertEquals("Invalid days value", exception.getMessage());
+    }
+
+    /**
+     * Random dates and periods of both eras, checked against java.time, which uses the same proleptic
+     * Gregorian calendar with 1 BC as year 0.
+     */
+    @Test
+    void addPeriodPropertyTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            boolean isAD = random.nextBoolean();
+            int year = 1 + random.nextInt(3000);
+            int month = 1 + random.nextInt(12);
+            int astronomicalYear = isAD ? year : 1 - year;
+            int day = 1 + random.nextInt(YearMonth.of(astronomicalYear, month).lengthOfMonth());
+            int hour = random.nextInt(24);
+            int minute = random.nextInt(60);
+            int second = random.nextInt(60);
+            Date date = new Date(isAD, year, month, day, hour, minute, second);
+            LocalDateTime expectedStart = LocalDateTime.of(astronomicalYear, month, day, hour, minute, second);
+            assertEquals(ChronoUnit.SECONDS.between(LocalDateTime.of(1, 1, 1, 0, 0, 0), expectedStart), date.secondsSinceNewEra());
+
+            Period period = new Period(random.nextInt(201) - 100, random.nextInt(41) - 20, random.nextInt(2001) - 1000,
+                    random.nextInt(201) - 100, random.nextInt(2001) - 1000, random.nextInt(200001) - 100000,
+                    random.nextLong() % 10_000_000_000L);
+            YearMonth expectedMonth = YearMonth.of(astronomicalYear, month)
+                    .plusMonths(12L * (Integer) period.getYearReference().getValue() + (Integer) period.getMonthReference().getValue());
+            if (day > expectedMonth.lengthOfMonth()) {
+                assertThrows(IllegalArgumentException.class, () -> date.add(period));
+                continue;
+            }
+            LocalDateTime expected = LocalDateTime.of(expectedMonth.getYear(), expectedMonth.getMonth(), day, hour, minute, second)
+                    .plusDays((Integer) period.getDayReference().getValue())
+                    .plusHours((Integer) period.getHourReference().getValue())
+                    .plusMinutes((Integer) period.getMinuteReference().getValue())
+                    .plusSeconds((Integer) period.getSecondReference().getValue())
+                    .plusSeconds((Long) period.getAbsolutePeriodDifferenceReference().getValue());
+            Date result = date.add(period);
+            assertEquals(expected.getYear() >= 1, result.getIsADReference().getValue());
+            assertEquals(expected.getYear() >= 1 ? expected.getYear() : 1 - expected.getYear(), result.getYearReference().getValue());
+            assertEquals(expected.getMonthValue(), result.getMonthReference().getValue());
+            assertEquals(expected.getDayOfMonth(), result.getDayReference().getValue());
+            assertEquals(expected.getHour(), result.getHourReference().getValue());
+            assertEquals(expected.getMinute(), result.getMinuteReference().getValue());
+            assertEquals(expected.getSecond(), result.getSecondReference().getValue());
+            assertEquals(ChronoUnit.SECONDS.between(expectedStart, expected), result.subtract(date).getAbsolutePeriodDifferenceReference().getValue());
+        }
+    }
+
+    @Test
+    void fieldReferenceTest() {
+        var date = new Date(true, 2024, 2, 28, 23, 53, 10);
+        var day = date.getDayReference();
+        day.setValue(29);
+        assertEquals(29, day.getValue());
+        assertEquals(new Date(true, 2024, 2, 29, 23, 53, 10), date);
+        assertThrows(IllegalArgumentException.class, () -> day.setValue(30));
+        assertThrows(IllegalArgumentException.class, () -> date.getYearReference().setValue("2024"));
+        assertEquals(29, date.getDayReference().getValue());
+        // 2024 BC is year -2023 of the proleptic calendar, which is not a leap year
+        assertThrows(IllegalArgumentException.class, () -> date.getIsADReference().setValue(false));
+        date.getDayReference().setValue(28);
+        date.getIsADReference().setValue(false);
+        date.getYearReference().setValue(2025);
+        date.getDayReference().setValue(29);
+        assertEquals(new Date(false, 2025, 2, 29, 23, 53, 10), date);
+        assertEquals(1, Date.compare(new Date(false, 1, 1, 1, 0, 0, 0), new Date(false, 2, 12, 31, 23, 59, 59)));
+    }
+
+    @Test
+    void datesSortTest() {
+        var dates = new ArrayList<>(List.of(
+                new Date(true, 2023, 1, 1, 0, 0, 0),
+                new Date(false, 1, 12, 31, 23, 59, 59),
+                new Date(true, 1, 1, 1, 0, 0, 0),
+                new Date(false, 44, 3, 15, 12, 0, 0),
+                new Date(true, 2022, 12, 31, 23, 59, 59)));
+        Collections.sort(dates);
+        for (int i = 1; i < dates.size(); i++) {
+            assertTrue(dates.get(i - 1).secondsSinceNewEra() < dates.get(i).secondsSinceNewEra());
+        }
+        assertEquals(new Date(false, 44, 3, 15, 12, 0, 0), dates.get(0));
+        assertEquals(new Date(true, 2023, 1, 1, 0, 0, 0), dates.get(4));
+    }
+
+    @Test
+    void periodFieldReferenceTest() {
+        var period = new Period(1, 2, 3, 4, 5, 6, 7L);
+        var hour = period.getHourReference();
+        hour.setValue(10);
+        assertEquals(10, hour.getValue());
+        assertEquals(new Period(1, 2, 3, 10, 5, 6, 7L), period);
+        assertEquals(7L, period.getAbsolutePeriodDifferenceReference().getValue());
+        assertThrows(IllegalArgumentException.class, () -> hour.setValue("10"));
+        assertEquals(new Period(2, 4, 6, 20, 10, 12, 14L), period.multiply(2));
+        assertEquals(new Period(0, 1, 1, 5, 2, 3, 3L), period.divide(2));
+    }
+
+    @Test
+    void periodAccumulateTest() {
+        var variable = new ValueReference(null);
+        var start = new Period(0, 0, 1, 0, 0, 0, 0L);
+        var step = new Period(0, 0, 0, 1, 0, 0, 0L);
+        var sum = start.accumulate(variable, step, 1);
+        assertNotSame(start, sum);
+        assertEquals(new Period(0, 0, 1, 0, 0, 0, 0L), start);
+        assertSame(sum, sum.accumulate(variable, step, 1));
+        assertEquals(new Period(0, 0, 1, 2, 0, 0, 0L), sum);
+        sum.release();
+        var copy = sum.accumulate(variable, step, -1);
+        assertNotSame(sum, copy);
+        assertEquals(new Period(0, 0, 1, 1, 0, 0, 0L), copy);
+    }
+
+    /**
+     * Every operation on vectors gives what the same operation gives for each of their elements.
+     */
+    @Test
+    void vectorKernelsMatchScalarsTest() {
+        Random random = new Random(7);
+        for (int run = 0; run < 50; run++) {
+            Date start = new Date(random.nextBoolean(), 1 + random.nextInt(3000), 1 + random.nextInt(12),
+                    1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60));
+            // days of at most 28 stay valid when months are added
+            Period step = random.nextBoolean() ? new Period(0, 1 + random.nextInt(2), 0, 0, 0, 0, 0L)
+                    : new Period(0, 0, random.nextInt(40), random.nextInt(48), 0, 0, random.nextInt(100000));
+            DateVector dates = DateVector.sequence(start, step, 20);
+            Period shift = new Period(0, 0, random.nextInt(400) - 200, 0, random.nextInt(100), 0, 0L);
+            Period calendarShift = new Period(random.nextInt(5) - 2, random.nextInt(3), 1, 0, 0, 0, 0L);
+            DateVector shifted = dates.add(shift, -1);
+            PeriodVector differences = dates.subtract(start);
+            PeriodVector pairwise = shifted.subtract(dates);
+            Date cutoff = dates.get(random.nextInt(20));
+            PeriodVector shiftedDifferences = differences.add(calendarShift, 1);
+            DateVector reachedDates;
+            try {
+                reachedDates = dates.add(shiftedDifferences, 1);
+            } catch (IllegalArgumentException e) {
+                reachedDates = null;
+            }
+
+            Date expected = start;
+            int earlier = 0;
+            boolean invalid = false;
+            for (int i = 0; i < 20; i++) {
+                if (i > 0) {
+                    expected = expected.add(step);
+                }
+                assertEquals(expected, dates.get(i));
+                assertEquals(expected.subtract(shift), shifted.get(i));
+                assertEquals(expected.subtract(start), differences.get(i));
+                assertEquals(expected.subtract(shift).subtract(expected), pairwise.get(i));
+                assertEquals(differences.get(i).multiply(3).subtract(shift), differences.multiply(3).add(shift, -1).get(i));
+                earlier += Date.compare(expected, cutoff) < 0 ? 1 : 0;
+                try {
+                    Date reached = expected.add(shiftedDifferences.get(i));
+                    if (reachedDates != null) {
+                        assertEquals(reached, reachedDates.get(i));
+                    }
+                } catch (IllegalArgumentException e) {
+                    // adding years or months reached a day that does not exist, so the whole vector fails
+                    invalid = true;
+                }
+            }
+            assertEquals(invalid, reachedDates == null);
+            assertEquals(earlier, dates.countLess(cutoff));
+            assertEquals(earlier, differences.countLess(cutoff.subtract(start)));
+        }
+    }
+
+    @Test
+    void parseDateRangeTest() {
+        TemporalParser parser = new TemporalParser(false);
+        String line = "date: 2023AD:5m:30d:23h:53':10\" ";
+        long packed = parser.parseDate(line, 6, line.length() - 1);
+        assertNotEquals(TemporalParser.INVALID_DATE, packed);
+        assertEquals(new Date(true, 2023, 5, 30, 23, 53, 10), Date.fromString(line.substring(6, line.length() - 1), parser));
+        assertEquals(TemporalParser.INVALID_DATE, parser.parseDate(line, 0, line.length()));
+        // input cut off after a unit used to read past the end of the line
+        assertNull(Date.fromString("2023y:1m"));
+        assertNull(Date.fromString(new StringBuilder("2023y:1m:1d:1h:1'"), parser));
+        assertThrows(IllegalArgumentException.class, () -> Date.fromString("2023y:13m:1d:0h:0':0\""));
+    }
+
+    @Test
+    void parseIsoTest() {
+        TemporalParser iso = new TemporalParser(true);
+        assertEquals(new Date(true, 2023, 5, 30, 23, 53, 10), Date.fromString("2023-05-30T23:53:10", iso));
+        assertEquals(new Date(true, 2023, 5, 30, 23, 53, 10), Date.fromString("2023-05-30 23:53:10Z", iso));
+        assertEquals(new Date(false, 1, 2, 29, 0, 0, 0), Date.fromString("0000-02-29T00:00:00", iso));
+        assertEquals(new Date(false, 44, 3, 15, 12, 0, 0), Date.fromString("-0043-03-15T12:00:00", iso));
+        assertEquals(new Date(true, 2023, 5, 30, 23, 53, 10), Date.fromString("2023y:5m:30d:23h:53':10\"", iso));
+        assertNull(Date.fromString("2023-5-30T23:53:10", iso));
+        assertNull(Date.fromString("2023-05-30T23:53", iso));
+        assertNull(Date.fromString("2023-05-30T23:53:10", new TemporalParser(false)));
+        assertThrows(IllegalArgumentException.class, () -> Date.fromString("2023-02-29T00:00:00", iso));
+
+        PeriodRegister register = new PeriodRegister();
+        assertEquals(new Period(1, 2, 17, 4, 5, 6, 0L), Period.fromString(" P1Y2M2W3DT4H5M6S ", iso, register));
+        assertEquals(new Period(0, 0, 0, 0, 90, 0, 0L), Period.fromString("PT90M", iso, register));
+        assertEquals(new Period(1, 0, 2, 0, 0, 0, 0L), Period.fromString("1y 2d", iso, register));
+        assertNull(Period.fromString("P", iso, register));
+        assertNull(Period.fromString("P1H", iso, register));
+        assertNull(Period.fromString("PT1D", iso, register));
+        assertNull(Period.fromString("P1Y", new TemporalParser(false), register));
+    }
+
+    /**
+     * Random dates and periods written in the DATAL formats are parsed into the values they were written from.
+     */
+    @Test
+    void parsePropertyTest() {
+        Random random = new Random(11);
+        TemporalParser parser = new TemporalParser(false);
+        PeriodRegister register = new PeriodRegister();
+        String[] eras = {"y", "Y", "ad", "AD", "bc", "Bc"};
+        for (int i = 0; i < 5000; i++) {
+            int era = random.nextInt(eras.length);
+            boolean isAD = era < 4;
+            int year = 1 + random.nextInt(5000);
+            int month = 1 + random.nextInt(12);
+            int day = 1 + random.nextInt(28);
+            int hour = random.nextInt(24);
+            int minute = random.nextInt(60);
+            int second = random.nextInt(60);
+            String text = year + eras[era] + ":" + month + "M:" + day + "d:" + hour + "H:" + minute + "':" + second + "\"";
+            assertEquals(new Date(isAD, year, month, day, hour, minute, second), Date.fromString(text, parser), text);
+
+            int[] units = new int[6];
+            StringBuilder period = new StringBuilder(random.nextBoolean() ? " " : "");
+            String symbols = "ymdh'\"";
+            for (int unit = 0; unit < 6; unit++) {
+                if (unit == 0 || random.nextBoolean()) {
+                    units[unit] = random.nextInt(1000);
+                    period.append(units[unit]).append(symbols.charAt(unit)).append(random.nextBoolean() ? " " : "");
+                }
+            }
+            assertEquals(new Period(units[0], units[1], units[2], units[3], units[4], units[5], 0L),
+                    Period.fromString(period, parser, register), period.toString());
+        }
+    }
+
+    @Test
+    void appendToTest() throws IOException {
+        var date = new Date(false, 44, 3, 5, 9, 0, 7);
+        var period = new Period(1, -2, 30, 0, 5, 61, -3600L);
+        var builder = new StringBuilder("x");
+        date.appendTo(builder);
+        assertEquals("xBC 44.03.05 09:00:07", builder.toString());
+        CharBuffer buffer = CharBuffer.allocate(64);
+        period.appendTo(buffer);
+        buffer.flip();
+        assertEquals("1.-2.30 0:5:61+-3600sec", buffer.toString());
+        assertEquals("AD 12345.12.31 23:59:59", new Date(true, 12345, 12, 31, 23, 59, 59).toString());
+        assertEquals("0.0.0 0:0:0+" + Long.MIN_VALUE + "sec", new Period(0, 0, 0, 0, 0, 0, Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    void yearStartCacheBoundsTest() {
+        LocalDateTime newEra = LocalDateTime.of(1, 1, 1, 0, 0, 0);
+        for (int round = 0; round < 2; round++) {
+            for (int astronomicalYear : new int[]{-400, -1, 0, 1, 2000, 3000, 3001, 100_000}) {
+                boolean isAD = astronomicalYear >= 1;
+                int year = isAD ? astronomicalYear : 1 - astronomicalYear;
+                boolean leap = YearMonth.of(astronomicalYear, 2).isLeapYear();
+                int month = leap ? 2 : 12;
+                int day = leap ? 29 : 31;
+                var date = new Date(isAD, year, month, day, 12, 0, 0);
+                long expected = ChronoUnit.SECONDS.between(newEra, LocalDateTime.of(astronomicalYear, month, day, 12, 0, 0));
+                assertEquals(expected, date.secondsSinceNewEra(), date.toString());
+            }
+        }
+    }
+
+    @Test
+    void editTest() {
+        var date = new Date(true, 2023, 1, 31, 10, 0, 0);
+        assertThrows(IllegalArgumentException.class, () -> date.setMonth(2));
+        assertSame(date, date.edit().month(2).day(28).hour(23).apply());
+        assertEquals(new Date(true, 2023, 2, 28, 23, 0, 0), date);
+
+        var mutation = date.edit().year(2024).day(29);
+        mutation.apply();
+        assertEquals(new Date(true, 2024, 2, 29, 23, 0, 0), date);
+
+        assertThrows(IllegalArgumentException.class, () -> date.edit().year(2025).apply());
+        assertEquals(new Date(true, 2024, 2, 29, 23, 0, 0), date);
+        date.edit().isAD(false).year(44).month(3).day(15).minute(30).second(1).apply();
+        assertEquals(new Date(false, 44, 3, 15, 23, 30, 1), date);
+    }
+}
@@ -1,13 +1,23 @@
+import org.example.builtin.ReaderInputProvider;
+import org.example.error.CodeError;
 import org.example.error.ErrorManager;
 import org.example.interpreter.Interpreter;
+import org.example.interpreter.InterpreterConfig;
+import org.example.interpreter.PreparedProgram;
+import org.example.interpreter.Profiler;
 import org.example.program.*;
 import org.example.source.Position;
 import org.example.types.Date;
 import org.example.types.Period;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -952,5 +962,252 @@ public class InterpreterTests {
         interpreter.visit(program);
     }
 
+    @Test
+    public void memoizedPureFunctionTest() {
+        ErrorManager eM = new ErrorManager();
+        Position pos = new Position(0, 0);
+        // fib(n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }
+        IdentifierExpression n = new IdentifierExpression("n", pos);
+        IfStatement baseCase = new IfStatement(
+                new ComparativeExpression(ComparisonOperator.LESS_THAN, n, new IntLiteralExpression(2, pos), pos),
+                new Block(List.of(new ReturnStatement(n, pos)), pos), null, pos);
+        AdditiveExpression sum = new AdditiveExpression(AdditiveOperator.PLUS,
+                new FunctionCallExpression("fib", List.of(
+                        new AdditiveExpression(AdditiveOperator.MINUS, n, new IntLiteralExpression(1, pos), pos)), pos),
+                new FunctionCallExpression("fib", List.of(
+                        new AdditiveExpression(AdditiveOperator.MINUS, n, new IntLiteralExpression(2, pos), pos)), pos),
+                pos);
+        UserFunctionDef fib = new UserFunctionDef("fib", List.of("n"),
+                new Block(List.of(baseCase, new ReturnStatement(sum, pos)), pos), pos);
+        AssignmentExpression assignResult = new AssignmentExpression(new IdentifierExpression("result", pos),
+                new FunctionCallExpression("fib", List.of(new IntLiteralExpression(30, pos)), pos), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(),
+                new Block(List.of(new ExpressionStatement(assignResult, pos), new ReturnStatement(new IdentifierExpression("result", pos), pos)), pos), pos);
+        Hashtable<String, FunctionDef> funcs = new Hashtable<>() {{ put("main", main); put("fib", fib); }};
+
+        InterpreterConfig config = new InterpreterConfig();
+        config.setMemoCacheSize(64);
+        Interpreter interpreter = new Interpreter(eM, new Program(funcs), config);
+        assertEquals(832040, interpreter.getLastResult(pos).getValue());
+        assertTrue(interpreter.getMemoHits() > 0);
+    }
+
+    @Test
+    public void memoizationDisabledByDefaultTest() {
+        ErrorManager eM = new ErrorManager();
+        Position pos = new Position(0, 0);
+        UserFunctionDef twice = new UserFunctionDef("twice", List.of("x"), new Block(List.of(new ReturnStatement(
+                new MultiplicativeExpression(MultiplicativeOperator.MULTIPLY, new IdentifierExpression("x", pos), new IntLiteralExpression(2, pos), pos),
+                pos)), pos), pos);
+        FunctionCallExpression call = new FunctionCallExpression("twice", List.of(new IntLiteralExpression(4, pos)), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(),
+                new Block(List.of(new ExpressionStatement(call, pos), new ReturnStatement(call, pos)), pos), pos);
+        Hashtable<String, FunctionDef> funcs = new Hashtable<>() {{ put("main", main); put("twice", twice); }};
+
+        Interpreter interpreter = new Interpreter(eM, new Program(funcs));
+        assertEquals(8, interpreter.getLastResult(pos).getValue());
+        assertEquals(0, interpreter.getMemoHits());
+    }
+
+    @Test
+    public void profilerTest() throws java.io.IOException {
+        ErrorManager eM = new ErrorManager();
+        Position pos = new Position(0, 0);
+        // fib(n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }
+        IdentifierExpression n = new IdentifierExpression("n", pos);
+        IfStatement baseCase = new IfStatement(
+                new ComparativeExpression(ComparisonOperator.LESS_THAN, n, new IntLiteralExpression(2, pos), pos),
+                new Block(List.of(new ReturnStatement(n, pos)), pos), null, pos);
+        AdditiveExpression sum = new AdditiveExpression(AdditiveOperator.PLUS,
+                new FunctionCallExpression("fib", List.of(
+                        new AdditiveExpression(AdditiveOperator.MINUS, n, new IntLiteralExpression(1, pos), pos)), pos),
+                new FunctionCallExpression("fib", List.of(
+                        new AdditiveExpression(AdditiveOperator.MINUS, n, new IntLiteralExpression(2, pos), pos)), pos),
+                pos);
+        UserFunctionDef fib = new UserFunctionDef("fib", List.of("n"),
+                new Block(List.of(baseCase, new ReturnStatement(sum, pos)), pos), pos);
+        ReturnStatement mainReturn = new ReturnStatement(
+                new FunctionCallExpression("fib", List.of(new IntLiteralExpression(10, pos)), pos), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(), new Block(List.of(mainReturn), pos), pos);
+        Hashtable<String, FunctionDef> funcs = new Hashtable<>() {{ put("main", main); put("fib", fib); }};
+
+        InterpreterConfig config = new InterpreterConfig();
+        Profiler profiler = new Profiler();
+        config.setProfiler(profiler);
+        new Interpreter(eM, new Program(funcs), config);
+
+        var stats = profiler.getFunctionStats();
+        assertEquals(2, stats.size());
+        var fibStats = stats.stream().filter(s -> s.getFunction() == fib).findFirst().orElseThrow();
+        assertEquals(177, fibStats.getCalls());
+        assertTrue(fibStats.getSelfNanos() <= fibStats.getTotalNanos());
+        assertEquals(177, profiler.getStatementCount(baseCase));
+        assertEquals(1, profiler.getStatementCount(mainReturn));
+
+        StringBuilder collapsed = new StringBuilder();
+        profiler.writeCollapsedStacks(collapsed);
+        assertTrue(collapsed.toString().startsWith("main "));
+        assertTrue(collapsed.toString().contains("main;fib;fib "));
+
+        // fib is pure, but its calls are still counted when it could be memoized
+        InterpreterConfig memoizing = new InterpreterConfig();
+        Profiler memoProfiler = new Profiler();
+        memoizing.setProfiler(memoProfiler);
+        memoizing.setMemoCacheSize(16);
+        new Interpreter(eM, new Program(funcs), memoizing);
+        assertEquals(177, memoProfiler.getFunctionStats().stream()
+                .filter(s -> s.getFunction() == fib).findFirst().orElseThrow().getCalls());
+
+        // main() { return readInt(); } starts a second run of itself while reading its input
+        UserFunctionDef reading = new UserFunctionDef("main", List.of(), new Block(List.of(new ReturnStatement(
+                new FunctionCallExpression("readInt", List.of(), pos), pos)), pos), pos);
+        PreparedProgram prepared = PreparedProgram.prepare(
+                new Program(new Hashtable<>() {{ put("main", reading); }}), eM, config);
+        List<Exception> overlapping = new ArrayList<>();
+        Object result = prepared.execute(eM, () -> {
+            try {
+                prepared.execute(eM, () -> "2", new StringBuilder());
+            } catch (IllegalStateException e) {
+                overlapping.add(e);
+            }
+            return "1";
+        }, new StringBuilder());
+        assertEquals(1, result);
+        assertEquals(1, overlapping.size());
+        // the profiler records the next run once the first one ended
+        assertEquals(2, prepared.execute(eM, () -> "2", new StringBuilder()));
+        assertEquals(2, profiler.getStatementCount(reading.getBody().getStatements().get(0)));
+    }
+
+    private static Program infiniteLoopProgram(Position pos) {
+        // main() { while (1 == 1) { } }
+        WhileStatement loop = new WhileStatement(
+                new ComparativeExpression(ComparisonOperator.EQUALS, new IntLiteralExpression(1, pos), new IntLiteralExpression(1, pos), pos),
+                new Block(List.of(), pos), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(), new Block(List.of(loop), pos), pos);
+        return new Program(new Hashtable<>() {{ put("main", main); }});
+    }
 
+    @Test
+    public void stepBudgetTest() {
+        ErrorManager eM = new ErrorManager();
+        Position pos = new Position(3, 5);
+        InterpreterConfig config = new InterpreterConfig();
+        config.setMaxSteps(10_000);
+        assertThrows(CodeError.class, () -> new Interpreter(eM, infiniteLoopProgram(pos), config));
+        assertEquals(1, eM.getErrors().size());
+        assertEquals(pos, eM.getErrors().get(0).getPosition());
+    }
+
+    @Test
+    public void timeoutTest() {
+        ErrorManager eM = new ErrorManager();
+        InterpreterConfig config = new InterpreterConfig();
+        config.setTimeoutMillis(50);
+        assertThrows(CodeError.class, () -> new Interpreter(eM, infiniteLoopProgram(new Position(0, 0)), config));
+        assertTrue(eM.getErrors().get(0).getMessage().contains("time limit"));
+    }
+
+    @Test
+    public void callDepthTest() {
+        ErrorManager eM = new ErrorManager();
+        Position pos = new Position(0, 0);
+        // f() { return f(); }
+        UserFunctionDef f = new UserFunctionDef("f", List.of(), new Block(List.of(
+                new ReturnStatement(new FunctionCallExpression("f", List.of(), pos), pos)), pos), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(), new Block(List.of(
+                new ReturnStatement(new FunctionCallExpression("f", List.of(), pos), pos)), pos), pos);
+        Hashtable<String, FunctionDef> funcs = new Hashtable<>() {{ put("main", main); put("f", f); }};
+        InterpreterConfig config = new InterpreterConfig();
+        config.setMaxCallDepth(100);
+        assertThrows(CodeError.class, () -> new Interpreter(eM, new Program(funcs), config));
+        assertTrue(eM.getErrors().get(0).getMessage().contains("call depth"));
+    }
+
+    @Test
+    public void sharedProgramConcurrentRunsTest() throws Exception {
+        Position pos = new Position(0, 0);
+        // main() { d = 2023y:1m:1d:0h:0':0"; d.day = d.day + 1; return d; }
+        IdentifierExpression d = new IdentifierExpression("d", pos);
+        MemberExpression day = new MemberExpression(d, new IdentifierExpression("day", pos), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(), new Block(List.of(
+                new ExpressionStatement(new AssignmentExpression(d,
+                        new DateLiteralExpression(new Date(true, 2023, 1, 1, 0, 0, 0), pos), pos), pos),
+                new ExpressionStatement(new AssignmentExpression(day,
+                        new AdditiveExpression(AdditiveOperator.PLUS, day, new IntLiteralExpression(1, pos), pos), pos), pos),
+                new ReturnStatement(d, pos)), pos), pos);
+        Program program = new Program(new Hashtable<>() {{ put("main", main); }});
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(executor.submit(() ->
+                    new Interpreter(new ErrorManager(), program).getLastResult(pos).getValue()));
+        }
+        for (var result : results) {
+            assertEquals(new Date(true, 2023, 1, 2, 0, 0, 0), result.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void invalidMemberAssignmentTest() {
+        Position pos = new Position(0, 0);
+        // main() { d = 2023y:2m:1d:0h:0':0"; d.day = 30; }
+        IdentifierExpression d = new IdentifierExpression("d", pos);
+        MemberExpression day = new MemberExpression(d, new IdentifierExpression("day", pos), pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(), new Block(List.of(
+                new ExpressionStatement(new AssignmentExpression(d,
+                        new DateLiteralExpression(new Date(true, 2023, 2, 1, 0, 0, 0), pos), pos), pos),
+                new ExpressionStatement(new AssignmentExpression(day, new IntLiteralExpression(30, pos), pos), pos)), pos), pos);
+        ErrorManager eM = new ErrorManager();
+        assertThrows(CodeError.class, () -> new Interpreter(eM, new Program(new Hashtable<>() {{ put("main", main); }})));
+        assertEquals("Invalid days value", eM.getErrors().get(0).getMessage());
+    }
+
+    private static Program doubleInputProgram(Position pos) {
+        // main() { x = readInt(); print(x * 2, [;]); return x; }
+        IdentifierExpression x = new IdentifierExpression("x", pos);
+        UserFunctionDef main = new UserFunctionDef("main", List.of(), new Block(List.of(
+                new ExpressionStatement(new AssignmentExpression(x, new FunctionCallExpression("readInt", List.of(), pos), pos), pos),
+                new ExpressionStatement(new FunctionCallExpression("print", List.of(
+                        new MultiplicativeExpression(MultiplicativeOperator.MULTIPLY, x, new IntLiteralExpression(2, pos), pos),
+                        new StringLiteralExpression(";", pos)), pos), pos),
+                new ReturnStatement(x, pos)), pos), pos);
+        return new Program(new Hashtable<>() {{ put("main", main); }});
+    }
+
+    @Test
+    public void preparedProgramExecuteManyTest() {
+        PreparedProgram prepared = PreparedProgram.prepare(doubleInputProgram(new Position(0, 0)), new ErrorManager());
+        StringBuilder output = new StringBuilder();
+        for (int i = 1; i <= 3; i++) {
+            Object result = prepared.execute(new ErrorManager(), () -> "21", output);
+            assertEquals(21, result);
+        }
+        assertEquals("42;42;42;", output.toString());
+    }
+
+    @Test
+    public void preparedProgramSharedInputTest() {
+        PreparedProgram prepared = PreparedProgram.prepare(doubleInputProgram(new Position(0, 0)), new ErrorManager());
+        var input = new ReaderInputProvider(new StringReader("1\n2\n"));
+        StringBuilder output = new StringBuilder();
+        assertEquals(1, prepared.execute(new ErrorManager(), input, output));
+        assertEquals(2, prepared.execute(new ErrorManager(), input, output));
+        assertEquals("2;4;", output.toString());
+        ErrorManager eM = new ErrorManager();
+        assertThrows(CodeError.class, () -> prepared.execute(eM, input, output));
+        assertEquals("No more input to read.", eM.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void builtinRedefinitionTest() {
+        Position pos = new Position(2, 1);
+        UserFunctionDef print = new UserFunctionDef("print", List.of(), new Block(List.of(), pos), pos);
+        Hashtable<String, FunctionDef> funcs = new Hashtable<>() {{ put("print", print); }};
+        ErrorManager eM = new ErrorManager();
+        assertThrows(CodeError.class, () -> PreparedProgram.prepare(new Program(funcs), eM));
+        assertEquals(pos, eM.getErrors().get(0).getPosition());
+    }
 }
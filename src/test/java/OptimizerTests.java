@@ -0,0 +1,734 @@
+import org.example.analysis.TreeWalker;
+import org.example.analysis.ValueType;
+import org.example.error.CodeError;
+import org.example.error.ErrorManager;
+import org.example.interpreter.InterpreterConfig;
+import org.example.interpreter.PreparedProgram;
+import org.example.lexer.CodeLexer;
+import org.example.lexer.CommentLexer;
+import org.example.error.Severity;
+import org.example.optimizer.CommonSubexpressionEliminator;
+import org.example.optimizer.DeadCodeEliminator;
+import org.example.optimizer.FunctionInliner;
+import org.example.optimizer.LoopInvariantHoister;
+import org.example.optimizer.LoopSpecializer;
+import org.example.optimizer.ScalarReplacer;
+import org.example.optimizer.SuperinstructionFuser;
+import org.example.optimizer.TypeSpecializer;
+import org.example.parser.Parser;
+import org.example.parser.Visitable;
+import org.example.program.*;
+import org.example.source.CodeSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OptimizerTests {
+
+    private static Program parse(String code) throws IOException {
+        ErrorManager eM = new ErrorManager();
+        try (Reader sR = new StringReader(code)) {
+            CodeSource source = new CodeSource(sR, eM);
+            CodeLexer codeLexer = new CodeLexer(source, eM);
+            CommentLexer commentLexer = new CommentLexer(codeLexer);
+            Parser parser = new Parser(commentLexer, eM);
+            return parser.parse();
+        }
+    }
+
+    /**
+     * Collects the expressions of one type in the order they are walked, including those nested in each other.
+     */
+    private static class Collector<T> extends TreeWalker {
+        private final Class<T> type;
+        private final List<T> found = new ArrayList<>();
+
+        Collector(Class<T> type) {
+            this.type = type;
+        }
+
+        private void add(Expression expression) {
+            if (type.isInstance(expression)) {
+                found.add(type.cast(expression));
+            }
+        }
+
+        @Override
+        public void visit(OrExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AndExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(ComparativeExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AdditiveExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(MultiplicativeExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(NegationExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AssignmentExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(MemberExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(IntLiteralExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(DoubleLiteralExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(StringLiteralExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(DateLiteralExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(PeriodLiteralExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(IdentifierExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(FunctionCallExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(CachedExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(InlinedCallExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(SpecializedBinaryExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(LocalComparisonExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(IncrementLocalExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(AccumulateLocalExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(TemporalChainExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(BoundCallExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+
+        @Override
+        public void visit(MemberAccessExpression expression) {
+            add(expression);
+            super.visit(expression);
+        }
+    }
+
+    private static <T> List<T> collect(Visitable tree, Class<T> type) {
+        var collector = new Collector<>(type);
+        tree.accept(collector);
+        return collector.found;
+    }
+
+    private static List<CachedExpression> cachedExpressions(Visitable tree) {
+        return collect(tree, CachedExpression.class);
+    }
+
+    private static String run(Program program, boolean optimize) {
+        InterpreterConfig config = new InterpreterConfig();
+        config.setHoistLoopInvariants(optimize);
+        config.setSpecializeTypes(optimize);
+        config.setEliminateCommonSubexpressions(optimize);
+        config.setFuseSuperinstructions(optimize);
+        config.setScalarReplacement(optimize);
+        StringBuilder output = new StringBuilder();
+        PreparedProgram.prepare(program, new ErrorManager(), config).execute(new ErrorManager(), () -> null, output);
+        return output.toString();
+    }
+
+    @Test
+    void hoistInvariantExpressionTest() throws IOException {
+        Program program = parse("main() { start = 2023y:1m:1d:0h:0':0\"; i = 0; " +
+                "while (i < 3) { d = start + 30d; i = i + 1; print(start.calculateSecondsSinceNewEra() - i, d, [;]); } }");
+        Program optimized = LoopInvariantHoister.optimize(program, Set.of());
+        List<CachedExpression> cached = cachedExpressions(optimized);
+        assertEquals(2, cached.size());
+        assertTrue(cached.get(0).getExpression() instanceof AdditiveExpression);
+        assertTrue(cached.get(1).getExpression() instanceof MemberExpression);
+        assertTrue(cachedExpressions(program).isEmpty());
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    @Test
+    void assignedOperandNotHoistedTest() throws IOException {
+        Program program = parse("main() { i = 0; step = 1; while (i < 10) { i = i + step * 2; if (i > 4) { step = 2; } } print(i); }");
+        List<CachedExpression> cached = cachedExpressions(LoopInvariantHoister.optimize(program, Set.of()));
+        assertTrue(cached.isEmpty());
+        assertEquals("10", run(program, true));
+    }
+
+    @Test
+    void memberAssignmentBlocksHoistingTest() throws IOException {
+        Program program = parse("main() { a = 2023y:1m:1d:0h:0':0\"; b = a; i = 0; " +
+                "while (i < 2) { print(b.day + 1, [;]); a.day = 5; i = i + 1; } }");
+        assertTrue(cachedExpressions(LoopInvariantHoister.optimize(program, Set.of())).isEmpty());
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    @Test
+    void pureFunctionCallHoistedTest() throws IOException {
+        Program program = parse("main() { i = 0; s = 0; while (i < 4) { s = s + square(3) + show(i); i = i + 1; } print(s); }" +
+                "square(x) { return x * x; }" +
+                "show(x) { print(x); return 0; }");
+        List<CachedExpression> cached = cachedExpressions(LoopInvariantHoister.optimize(program, Set.of("square")));
+        assertEquals(1, cached.size());
+        assertTrue(cached.get(0).getExpression() instanceof FunctionCallExpression);
+        assertEquals("012336", run(program, true));
+    }
+
+    @Test
+    void nestedLoopScopesTest() throws IOException {
+        Program program = parse("main() { i = 0; while (i < 3) { j = 0; while (j < 2) { print(i * 10 + 1, [;]); j = j + 1; } i = i + 1; } }");
+        List<CachedExpression> cached = cachedExpressions(LoopInvariantHoister.optimize(program, Set.of()));
+        assertEquals(1, cached.size());
+        assertEquals("1;1;11;11;21;21;", run(program, true));
+    }
+
+    @Test
+    void hoistedErrorOnlyIfLoopRunsTest() throws IOException {
+        // the condition does not change either, so it is cached as well
+        Program program = parse("main() { zero = 0; i = 0; while (i < 0) { x = 1 / zero; } print([ok]); }");
+        assertEquals(2, cachedExpressions(LoopInvariantHoister.optimize(program, Set.of())).size());
+        assertEquals("ok", run(program, true));
+
+        Program failing = parse("main() { zero = 0; i = 0;\nwhile (i < 1) { print([in;]); x = 1 / zero; i = i + 1; } }");
+        InterpreterConfig config = new InterpreterConfig();
+        ErrorManager eM = new ErrorManager();
+        StringBuilder output = new StringBuilder();
+        PreparedProgram prepared = PreparedProgram.prepare(failing, eM, config);
+        assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, output));
+        assertEquals("in;", output.toString());
+        assertEquals("Division by zero detected", eM.getErrors().get(0).getMessage());
+        assertEquals(2, eM.getErrors().get(0).getPosition().getLine());
+    }
+
+    private static List<InlinedCallExpression> inlinedCalls(Visitable tree) {
+        return collect(tree, InlinedCallExpression.class);
+    }
+
+    @Test
+    void inlineSmallFunctionTest() throws IOException {
+        Program program = parse("main() { x = 1; i = 0; while (i < 3) { x = x + twice(i) + nextDay(2023y:1m:1d:0h:0':0\").day; i = i + 1; } print(x); }" +
+                "twice(a) { x = a * 2; return x; }" +
+                "nextDay(d) { d.day = d.day + 1; return d; }");
+        Program inlined = FunctionInliner.optimize(program, 16);
+        assertEquals(2, inlinedCalls(inlined).size());
+        assertTrue(inlinedCalls(program).isEmpty());
+        // x of twice must not overwrite x of main
+        assertEquals("13", run(program, true));
+        InterpreterConfig config = new InterpreterConfig();
+        config.setInlineMaxSize(0);
+        StringBuilder output = new StringBuilder();
+        PreparedProgram.prepare(program, new ErrorManager(), config).execute(new ErrorManager(), () -> null, output);
+        assertEquals("13", output.toString());
+    }
+
+    @Test
+    void nestedInliningTest() throws IOException {
+        Program program = parse("main() { print(outer(3)); }" +
+                "outer(a) { return inner(a) + inner(a + 1); }" +
+                "inner(a) { b = a * a; return b; }");
+        List<InlinedCallExpression> inlined = inlinedCalls(FunctionInliner.optimize(program, 16).getFunctions().get("main"));
+        assertEquals(3, inlined.size());
+        assertEquals(List.of("outer#a"), inlined.get(0).getParameters());
+        assertEquals("25", run(program, true));
+    }
+
+    @Test
+    void functionsNotInlinedTest() throws IOException {
+        Program program = parse("main() { void(); print(fib(10), early(1), big(2)); }" +
+                "fib(n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }" +
+                "early(n) { if (n > 0) { return 1; } return 0; }" +
+                "void() { x = 1; }" +
+                "big(n) { n = n + 1; n = n + 1; n = n + 1; return n * n; }");
+        List<InlinedCallExpression> inlined = inlinedCalls(FunctionInliner.optimize(program, 4));
+        assertEquals(1, inlined.size());
+        assertEquals("void", inlined.get(0).getName());
+        assertNull(inlined.get(0).getResult());
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    private static List<SpecializedOperator> specializedOperators(Visitable tree) {
+        return collect(tree, SpecializedBinaryExpression.class).stream()
+                .map(SpecializedBinaryExpression::getOperator).collect(Collectors.toList());
+    }
+
+    @Test
+    void specializeProvenTypesTest() throws IOException {
+        Program program = parse("main() { i = 0; sum = 0.5; d = 2023y:1m:1d:0h:0':0\"; " +
+                "while (i < 4) { sum = sum + i * 2; d = d + 1d; i = i + 1; } print(sum, [;], d.day); }");
+        Program specialized = TypeSpecializer.optimize(program);
+        assertEquals(List.of(SpecializedOperator.INT_LESS_THAN, SpecializedOperator.DOUBLE_ADD,
+                        SpecializedOperator.INT_MULTIPLY, SpecializedOperator.DATE_ADD_PERIOD, SpecializedOperator.INT_ADD),
+                specializedOperators(specialized));
+        assertTrue(specializedOperators(program).isEmpty());
+        assertEquals("12.5;5", run(program, true));
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    @Test
+    void unprovenTypesStayGenericTest() throws IOException {
+        Program program = parse("main() { x = 1; if (readInt() > 0) { x = 2.5; } print(x + x, add(1, 2)); " +
+                "i = 0; while (i < 2) { i = i + 1.5; } print([;], i); }" +
+                "add(a, b) { return a + b; }");
+        Program specialized = TypeSpecializer.optimize(program);
+        // x may be a double after the if, i becomes a double in the loop, parameters are unknown
+        assertEquals(List.of(SpecializedOperator.INT_MORE_THAN), specializedOperators(specialized.getFunctions().get("main")));
+        assertTrue(specializedOperators(specialized.getFunctions().get("add")).isEmpty());
+        InterpreterConfig config = new InterpreterConfig();
+        config.setInlineMaxSize(0);
+        StringBuilder output = new StringBuilder();
+        PreparedProgram.prepare(program, new ErrorManager(), config).execute(new ErrorManager(), () -> "1", output);
+        assertEquals("5.03;3.0", output.toString());
+
+        // the assignment in the right operand of or is skipped, so x is still a string after the condition
+        Program shortCircuit = parse("main() { a = 1; x = [s]; if (a == 1 or x = 5) { } print(x + 1); }");
+        assertFalse(specializedOperators(TypeSpecializer.optimize(shortCircuit)).contains(SpecializedOperator.INT_ADD));
+        ErrorManager eM = new ErrorManager();
+        PreparedProgram prepared = PreparedProgram.prepare(shortCircuit, eM, new InterpreterConfig());
+        assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+        assertEquals("Incompatible additive operands: String +- Integer", eM.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    void specializedDivisionByZeroTest() throws IOException {
+        Program program = parse("main() { a = 1;\nb = a - 1; print(a / b); }");
+        assertEquals(List.of(SpecializedOperator.INT_SUBTRACT, SpecializedOperator.INT_DIVIDE),
+                specializedOperators(TypeSpecializer.optimize(program)));
+        ErrorManager eM = new ErrorManager();
+        PreparedProgram prepared = PreparedProgram.prepare(program, eM, new InterpreterConfig());
+        assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+        assertEquals("Division by zero detected", eM.getErrors().get(0).getMessage());
+        assertEquals(2, eM.getErrors().get(0).getPosition().getLine());
+    }
+
+    @Test
+    void specializedInvalidDateTest() throws IOException {
+        // January 31st plus a month does not exist, the year after the last one does not fit into an int
+        Map<String, String> errors = Map.of(
+                "main() { d = 2020y:1m:31d:0h:0':0\";\nprint(d + 1M); }", "Invalid days value",
+                "main() { d = 2147483647y:12m:1d:0h:0':0\";\nprint(d + 1M); }", "Invalid years value");
+        for (var error : errors.entrySet()) {
+            Program program = parse(error.getKey());
+            assertEquals(List.of(SpecializedOperator.DATE_ADD_PERIOD), specializedOperators(TypeSpecializer.optimize(program)));
+            for (boolean optimize : List.of(false, true)) {
+                InterpreterConfig config = new InterpreterConfig();
+                config.setSpecializeTypes(optimize);
+                ErrorManager eM = new ErrorManager();
+                PreparedProgram prepared = PreparedProgram.prepare(program, eM, config);
+                assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+                assertEquals(error.getValue(), eM.getErrors().get(0).getMessage());
+                assertEquals(2, eM.getErrors().get(0).getPosition().getLine());
+            }
+        }
+    }
+
+    @Test
+    void removeDeadCodeTest() throws IOException {
+        Program program = parse("main() { x = 1; if (1 > 2) { x = helper(); } " +
+                "if (2 > 1 and [a] == [a]) { print(x); } else { print([never]); } " +
+                "if (not (1 == 1)) { y = 1; } else { x = 5; } print(x); print(early()); }" +
+                "early() { return 3; print([after]); }" +
+                "helper() { return 2; }" +
+                "unused() { return helper(); }");
+        ErrorManager eM = new ErrorManager();
+        Program optimized = DeadCodeEliminator.optimize(program, eM);
+        assertEquals(Set.of("main", "early"), optimized.getFunctions().keySet());
+        assertEquals(1, ((UserFunctionDef) optimized.getFunctions().get("early")).getBody().getStatements().size());
+        List<Statement> main = ((UserFunctionDef) optimized.getFunctions().get("main")).getBody().getStatements();
+        // the print is merged into main, the assigning else branch keeps its block
+        assertEquals(5, main.size());
+        assertTrue(main.get(1) instanceof ExpressionStatement);
+        assertNull(((IfStatement) main.get(2)).getElseBlock());
+        assertEquals(6, eM.getErrors().size());
+        assertTrue(eM.getErrors().stream().allMatch(e -> e.getSeverity() == Severity.INFO));
+        assertEquals("153", run(program, true));
+
+        InterpreterConfig config = new InterpreterConfig();
+        config.setRemoveDeadCode(false);
+        StringBuilder output = new StringBuilder();
+        PreparedProgram.prepare(program, new ErrorManager(), config).execute(new ErrorManager(), () -> null, output);
+        assertEquals("153", output.toString());
+
+        // removing the unreachable print leaves an if that returns in both branches at the end of the body
+        Program returning = parse("main() { print(f(1), [;], g()); }" +
+                "f(n) { if (n > 0) { return 1; } else { return 2; } print([after]); }" +
+                "g() { if (1 == 1) { if (1 > 0) { return 3; } else { return 4; } } print([after]); }");
+        assertEquals(1, ((UserFunctionDef) DeadCodeEliminator.optimize(returning, null).getFunctions().get("f"))
+                .getBody().getStatements().size());
+        output = new StringBuilder();
+        PreparedProgram.prepare(returning, new ErrorManager(), config).execute(new ErrorManager(), () -> null, output);
+        assertEquals("1;3", output.toString());
+        assertEquals("1;3", run(returning, true));
+    }
+
+    @Test
+    void eliminateCommonSubexpressionsTest() throws IOException {
+        Program program = parse("main() { s = 2023y:1m:1d:0h:0':0\"; e = 2023y:1m:2d:0h:0':0\"; " +
+                "p = e - s; print(p.getDifference() * 2, [;], p.getDifference() * 2 / 60, [;]); " +
+                "i = 0; while (i < 3) { print(i * i + 1, [;], i * i + 1, [;]); i = i + 1; } }");
+        Program optimized = CommonSubexpressionEliminator.optimize(program, Set.of());
+        List<CachedExpression> cached = cachedExpressions(optimized);
+        // the products and the differences inside them, then the sums and the squares inside them in the loop
+        assertEquals(8, cached.size());
+        assertTrue(cached.get(0).getExpression() instanceof MultiplicativeExpression);
+        assertTrue(cached.get(1).getExpression() instanceof MemberExpression);
+        assertEquals("172800.0;2880.0;1;1;2;2;5;5;", run(program, true));
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    @Test
+    void sharingStopsAtAssignmentsAndImpureCallsTest() throws IOException {
+        Program program = parse("main() { a = 2; b = 3; d = 2023y:1m:1d:0h:0':0\"; " +
+                "x = a * b + 1; a = a + 1; y = a * b + 1; " +
+                "m = d.year * 12 + d.month; d.month = 3; n = d.year * 12 + d.month; " +
+                "r = readInt() + 1; t = readInt() + 1; " +
+                "p = twice(a) + 1; q = twice(a) + 1; " +
+                "print(x, [;], y, [;], n - m, [;], r + t, [;], p + q); } " +
+                "twice(v) { return v * 2; }");
+        List<CachedExpression> cached = cachedExpressions(
+                CommonSubexpressionEliminator.optimize(program, Set.of("twice")));
+        // only both occurrences of twice(a) + 1 and of the call inside them
+        assertEquals(4, cached.size());
+        assertTrue(cached.get(0).getExpression() instanceof AdditiveExpression);
+        assertTrue(cached.get(1).getExpression() instanceof FunctionCallExpression);
+        InterpreterConfig config = new InterpreterConfig();
+        StringBuilder output = new StringBuilder();
+        PreparedProgram.prepare(program, new ErrorManager(), config).execute(new ErrorManager(), () -> "1", output);
+        assertEquals("7;10;2;4;14", output.toString());
+    }
+
+    @Test
+    void sharedInReturnOfRepeatedCallsTest() throws IOException {
+        Program program = parse("main() { i = 0; while (i < 3) { print(square(i), [;]); i = i + 1; } }" +
+                "square(a) { return (a + 1) * (a + 1); }");
+        InterpreterConfig config = new InterpreterConfig();
+        config.setInlineMaxSize(0);
+        PreparedProgram prepared = PreparedProgram.prepare(program, new ErrorManager(), config);
+        assertEquals(2, cachedExpressions(prepared.getProgram().getFunctions().get("square")).size());
+        StringBuilder output = new StringBuilder();
+        prepared.execute(new ErrorManager(), () -> null, output);
+        assertEquals("1;4;9;", output.toString());
+    }
+
+    private static List<Expression> superinstructions(Visitable tree) {
+        return collect(tree, Expression.class).stream()
+                .filter(expression -> expression instanceof LocalComparisonExpression
+                        || expression instanceof IncrementLocalExpression || expression instanceof AccumulateLocalExpression)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void fuseLoopIdiomsTest() throws IOException {
+        Program program = parse("main() { i = 0; n = 5; acc = 0; d = 2023y:1m:1d:0h:0':0\"; p = 1d; " +
+                "while (i < n) { acc = acc + i; d = d + p; i = i + 1; } print(acc, [;], d.day); }");
+        List<Expression> fused = superinstructions(SuperinstructionFuser.optimize(program));
+        assertEquals(4, fused.size());
+        assertTrue(fused.get(0) instanceof LocalComparisonExpression);
+        assertTrue(fused.get(1) instanceof AccumulateLocalExpression);
+        assertTrue(fused.get(2) instanceof AccumulateLocalExpression);
+        assertEquals(1, ((IncrementLocalExpression) fused.get(3)).getDelta());
+        assertEquals("10;6", run(program, true));
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    @Test
+    void accumulateInvalidDateTest() throws IOException {
+        // January 31st plus a month does not exist
+        Program program = parse("main() { d = 2020y:1m:31d:0h:0':0\"; p = 1M; i = 0;\n" +
+                "while (i < 2) { d = d + p; i = i + 1; } }");
+        List<AccumulateLocalExpression> accumulations =
+                collect(SuperinstructionFuser.optimize(TypeSpecializer.optimize(program)), AccumulateLocalExpression.class);
+        assertEquals(1, accumulations.size());
+        assertEquals(SpecializedOperator.DATE_ADD_PERIOD, accumulations.get(0).getSpecializedOperator());
+        List<String> errors = new ArrayList<>();
+        for (boolean optimize : List.of(false, true)) {
+            InterpreterConfig config = new InterpreterConfig();
+            config.setSpecializeTypes(optimize);
+            config.setFuseSuperinstructions(optimize);
+            ErrorManager eM = new ErrorManager();
+            PreparedProgram prepared = PreparedProgram.prepare(program, eM, config);
+            assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+            errors.add(eM.getErrors().get(0).getMessage() + " " + eM.getErrors().get(0).getPosition().getLine());
+        }
+        assertEquals(List.of("Invalid days value 2", "Invalid days value 2"), errors);
+    }
+
+    @Test
+    void accumulatePeriodsInPlaceTest() throws IOException {
+        // b and c hold the sum from before the later accumulations, which must not change them
+        Program program = parse("main() { acc = 0d; p = 1h; i = 0; while (i < 3) { acc = acc + p; i = i + 1; } " +
+                "b = acc; acc = acc + p; c = (acc = acc - 2h); acc = acc + p; " +
+                "print(b.hour, [;], c.hour, [;], acc.hour, [;], p.hour); }");
+        assertEquals("3;2;3;1", run(program, true));
+        assertEquals(run(program, false), run(program, true));
+    }
+
+    @Test
+    void vectorBuiltinsTest() throws IOException {
+        Program program = parse("main() { v = dateVector(2023y:1m:20d:0h:0':0\", 1d, 5); w = v + 1M; gaps = w - v; " +
+                "cutoff = 2023y:3m:1d:0h:0':0\" - 2023y:1m:1d:0h:0':0\"; " +
+                "print(size(v), [;], at(w, 1), [;], countLess(v, 2023y:1m:22d:0h:0':0\"), [;], " +
+                "at(gaps, 4).getDifference(), [;], countLess(gaps, cutoff), [;], countLess(gaps * 2, cutoff), [;], " +
+                "at(v - 1d + gaps, 2)); }");
+        assertEquals("5;AD 2023.02.21 00:00:00;2;2678400;5;0;AD 2023.02.21 00:00:00", run(program, true));
+        assertEquals(run(program, false), run(program, true));
+        // January 31st plus a month does not exist, vectors of different sizes cannot be subtracted
+        Map<String, String> errors = Map.of(
+                "main() { print(dateVector(2023y:1m:27d:0h:0':0\", 1d, 5) + 1M); }", "Invalid days value",
+                "main() { d = 2023y:1m:1d:0h:0':0\"; v = dateVector(d, 1d, 3); v = v - dateVector(d, 1d, 4); }",
+                "Vectors of different sizes: 3 and 4");
+        for (var error : errors.entrySet()) {
+            for (boolean optimize : List.of(false, true)) {
+                InterpreterConfig config = new InterpreterConfig();
+                config.setFuseSuperinstructions(optimize);
+                ErrorManager eM = new ErrorManager();
+                PreparedProgram prepared = PreparedProgram.prepare(parse(error.getKey()), eM, config);
+                assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+                assertEquals(error.getValue(), eM.getErrors().get(0).getMessage());
+            }
+        }
+    }
+
+    @Test
+    void superinstructionFallbackTest() throws IOException {
+        // x is not an int, so the fused comparison and increment use the original expressions
+        Program program = parse("main() { x = 1.5; while (x < 4) { x = x + 1; } s = 2023y:1m:5d:0h:0':0\"; " +
+                "s = s - 1d; print(x, [;], s.day, [;], x = x - 1); }");
+        assertEquals(4, superinstructions(SuperinstructionFuser.optimize(program)).size());
+        assertEquals("4.5;4;3.5", run(program, true));
+
+        for (String code : List.of("main() { acc = 1; acc = acc + [x]; }", "main() { j = j + 1; }")) {
+            Program failing = parse(code);
+            List<String> messages = new ArrayList<>();
+            for (boolean optimize : List.of(false, true)) {
+                InterpreterConfig config = new InterpreterConfig();
+                config.setFuseSuperinstructions(optimize);
+                ErrorManager eM = new ErrorManager();
+                PreparedProgram prepared = PreparedProgram.prepare(failing, eM, config);
+                assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+                messages.add(eM.getErrors().get(0).getMessage());
+            }
+            assertEquals(messages.get(0), messages.get(1));
+        }
+    }
+
+    @Test
+    void scalarReplaceTemporalChainsTest() throws IOException {
+        Program program = parse("main() { d = 2023y:1m:1d:0h:0':0\"; p = 2h; e = d + 1d + 2h - p; q = p + 1d - 3h; " +
+                "f = d + (q + p) + (e - d); print(e, [;], q, [;], f, [;], d + 1d); }");
+        List<TemporalChainExpression> chains =
+                collect(ScalarReplacer.optimize(TypeSpecializer.optimize(program)), TemporalChainExpression.class);
+        // a single operation has no intermediate value
+        assertEquals(3, chains.size());
+        assertEquals(SpecializedOperator.DATE_SUBTRACT_PERIOD, chains.get(0).getOriginal().getOperator());
+        assertEquals(SpecializedOperator.PERIOD_SUBTRACT, chains.get(1).getOriginal().getOperator());
+        assertEquals(run(program, false), run(program, true));
+        assertEquals("AD 2023.01.02 00:00:00;0.0.1 -1:0:0+0sec;AD 2023.01.03 01:00:00;AD 2023.01.02 00:00:00",
+                run(program, true));
+
+        // the date chain of the difference runs inside the period chain, deeper than any date chain before it
+        Program nested = parse("main() { d = 2023y:1m:1d:0h:0':0\"; p = 1h; q = p + (d + 1d + 2h - d); " +
+                "e = d + (p + (d + 2d + 3h - d)) + 1h; print(q.getDifference(), [;], e); }");
+        assertEquals(run(nested, false), run(nested, true));
+        assertEquals("93600;AD 2023.01.03 05:00:00", run(nested, true));
+
+        // a date of the chain does not exist
+        Program invalid = parse("main() { d = 2020y:1m:31d:0h:0':0\";\ne = d + 1M + 1d; }");
+        assertEquals(1, collect(ScalarReplacer.optimize(TypeSpecializer.optimize(invalid)), TemporalChainExpression.class).size());
+        for (boolean optimize : List.of(false, true)) {
+            InterpreterConfig config = new InterpreterConfig();
+            config.setSpecializeTypes(optimize);
+            ErrorManager eM = new ErrorManager();
+            PreparedProgram prepared = PreparedProgram.prepare(invalid, eM, config);
+            assertThrows(CodeError.class, () -> prepared.execute(eM, () -> null, new StringBuilder()));
+            assertEquals("Invalid days value", eM.getErrors().get(0).getMessage());
+            assertEquals(2, eM.getErrors().get(0).getPosition().getLine());
+        }
+    }
+
+    @Test
+    void specializeRunningLoopTest() throws IOException {
+        Program program = parse("main() { while (i < n) { acc = acc + x; i = i + 1; } }");
+        var loop = (WhileStatement) ((UserFunctionDef) program.getFunctions().get("main")).getBody().getStatements().get(0);
+        WhileStatement specialized = LoopSpecializer.specialize(loop, Map.of("i", ValueType.INT, "n", ValueType.INT,
+                "acc", ValueType.INT, "x", ValueType.DOUBLE), true, false);
+        // acc becomes a double in the first iteration, so its type at the start of an iteration is not known
+        assertEquals(List.of(SpecializedOperator.INT_LESS_THAN, SpecializedOperator.INT_ADD),
+                specializedOperators(new Block(List.of(specialized), specialized.getPosition())));
+        WhileStatement fused = LoopSpecializer.specialize(specialized, Map.of("i", ValueType.INT, "n", ValueType.INT,
+                "acc", ValueType.DOUBLE, "x", ValueType.DOUBLE), true, true);
+        assertEquals(List.of(SpecializedOperator.INT_LESS_THAN, SpecializedOperator.DOUBLE_ADD, SpecializedOperator.INT_ADD),
+                specializedOperators(new Block(List.of(fused), fused.getPosition())));
+        assertEquals(3, superinstructions(new Block(List.of(fused), fused.getPosition())).size());
+
+        // parameters are UNKNOWN before the run; step changes its type after the loop was specialized for ints
+        Program running = parse("sum(n, step) { i = 0; acc = n; while (i < 3000) { acc = acc + step; " +
+                "if (i == 1999) { step = 0.5; } i = i + 1; } return acc; } main() { print(sum(1, 1), [;], sum(0.5, 2)); }");
+        List<String> outputs = new ArrayList<>();
+        for (int threshold : List.of(0, 1, 10)) {
+            InterpreterConfig config = new InterpreterConfig();
+            config.setInlineMaxSize(0);
+            config.setOsrThreshold(threshold);
+            StringBuilder output = new StringBuilder();
+            PreparedProgram.prepare(running, new ErrorManager(), config).execute(new ErrorManager(), () -> null, output);
+            outputs.add(output.toString());
+        }
+        assertEquals(List.of("2501.0;4500.5", "2501.0;4500.5", "2501.0;4500.5"), outputs);
+    }
+
+    @Test
+    void bindCallsToTargetsTest() throws IOException {
+        Program program = parse("fib(n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); } " +
+                "main() { d = 2023y:1m:1d:0h:0':0\"; print(fib(15), [;], d.calculateSecondsSinceNewEra() > 0); }");
+        InterpreterConfig config = new InterpreterConfig();
+        config.setInlineMaxSize(0);
+        config.setMemoCacheSize(16);
+        PreparedProgram prepared = PreparedProgram.prepare(program, new ErrorManager(), config);
+        List<BoundCallExpression> calls = collect(prepared.getProgram(), BoundCallExpression.class);
+        // the method is resolved against its Date, so it is not bound
+        assertEquals(4, calls.size());
+        for (var call : calls) {
+            assertSame(prepared.getFunctions().get(call.getOriginal().getName()), call.getTarget());
+            assertEquals(call.getOriginal().getName().equals("fib"), call.isMemoized());
+        }
+        StringBuilder output = new StringBuilder();
+        prepared.execute(new ErrorManager(), () -> null, output);
+        assertEquals("610;true", output.toString());
+
+        // calls in the operand of a fused accumulation are bound as well
+        Program loop = parse("main() { i = 0; acc = 0; while (i < 3) { acc = acc + twice(i); i = i + 1; } print(acc); }" +
+                "twice(a) { return a * 2; }");
+        config.setMemoCacheSize(0);
+        PreparedProgram fused = PreparedProgram.prepare(loop, new ErrorManager(), config);
+        List<AccumulateLocalExpression> accumulations = collect(fused.getProgram(), AccumulateLocalExpression.class);
+        assertEquals(1, accumulations.size());
+        assertTrue(accumulations.get(0).getOperand() instanceof BoundCallExpression);
+        assertEquals(collect(fused.getProgram(), BoundCallExpression.class).size(),
+                collect(fused.getProgram(), FunctionCallExpression.class).size());
+        output = new StringBuilder();
+        fused.execute(new ErrorManager(), () -> null, output);
+        assertEquals("6", output.toString());
+    }
+
+    @Test
+    void resolveMembersTest() throws IOException {
+        Program program = parse("main() { d = 2023y:1m:1d:0h:0':0\"; p = 2023y:1m:2d:0h:0':0\" - d; d.day = 5; " +
+                "print(d.day, [;], p.getDifference(), [;], d.calculateSecondsSinceNewEra(p) > 0); }");
+        PreparedProgram prepared = PreparedProgram.prepare(program, new ErrorManager(), new InterpreterConfig());
+        assertTrue(collect(prepared.getProgram(), MemberExpression.class).isEmpty());
+        assertEquals(List.of(Member.DAY, Member.DAY, Member.GET_DIFFERENCE, Member.CALCULATE_SECONDS_SINCE_NEW_ERA),
+                collect(prepared.getProgram(), MemberAccessExpression.class).stream()
+                        .map(MemberAccessExpression::getMember).collect(Collectors.toList()));
+        // arguments of methods are ordinary expressions, p is a variable and not a member of d
+        StringBuilder output = new StringBuilder();
+        prepared.execute(new ErrorManager(), () -> null, output);
+        assertEquals("5;86400;true", output.toString());
+        assertEquals(output.toString(), run(program, false));
+
+        // members read in the operand of a fused accumulation are resolved as well
+        Program loop = parse("main() { d = 2023y:1m:3d:0h:0':0\"; i = 0; acc = 0; " +
+                "while (i < 3) { acc = acc + d.day; i = i + 1; } print(acc); }");
+        PreparedProgram fused = PreparedProgram.prepare(loop, new ErrorManager(), new InterpreterConfig());
+        List<AccumulateLocalExpression> accumulations = collect(fused.getProgram(), AccumulateLocalExpression.class);
+        assertEquals(1, accumulations.size());
+        assertTrue(accumulations.get(0).getOperand() instanceof MemberAccessExpression);
+        assertTrue(collect(fused.getProgram(), MemberExpression.class).isEmpty());
+        output = new StringBuilder();
+        fused.execute(new ErrorManager(), () -> null, output);
+        assertEquals("9", output.toString());
+    }
+}